@@ -0,0 +1,257 @@
+//DEPS info.picocli:picocli:4.7.1
+//DEPS eu.easyrpa:easy-rpa-openframework-excel:1.0.0
+//DEPS org.apache.logging.log4j:log4j-core:2.19.0
+//DEPS org.apache.logging.log4j:log4j-layout-template-json:2.19.0
+//DEPS com.lmax:disruptor:3.4.4
+//DEPS org.jsoup:jsoup:1.15.4
+//DEPS com.google.code.gson:gson:2.10.1
+
+//SOURCES util/ProgressTracker.java
+//SOURCES util/PageType.java
+//SOURCES util/ScrapeContext.java
+//SOURCES util/ErrorCollector.java
+//SOURCES util/AsyncLogs.java
+//SOURCES util/Metrics.java
+//SOURCES util/LatencyHistogram.java
+//SOURCES util/HtmlArchive.java
+//SOURCES util/HtmlExtractor.java
+//SOURCES util/LeadNormalizer.java
+//SOURCES util/SpecialChars.java
+//SOURCES util/JobDescriptors.java
+//SOURCES util/RemovableNameSegments.java
+//SOURCES util/SecondLvlDomains.java
+
+//SOURCES model/Lead.java
+//SOURCES model/LeadStore.java
+//SOURCES model/Company.java
+
+//FILES log4j2.xml=../../../../resources/log4j2.xml
+//FILES log4j2.component.properties=../../../../resources/log4j2.component.properties
+
+//JAVAC_OPTIONS -encoding UTF8
+
+package io.qbilon.linkedin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import eu.easyrpa.openframework.excel.ExcelDocument;
+import io.qbilon.linkedin.model.Company;
+import io.qbilon.linkedin.model.Lead;
+import io.qbilon.linkedin.model.LeadStore;
+import io.qbilon.linkedin.util.AsyncLogs;
+import io.qbilon.linkedin.util.ErrorCollector;
+import io.qbilon.linkedin.util.HtmlArchive;
+import io.qbilon.linkedin.util.HtmlExtractor;
+import io.qbilon.linkedin.util.LeadNormalizer;
+import io.qbilon.linkedin.util.Metrics;
+import io.qbilon.linkedin.util.PageType;
+import io.qbilon.linkedin.util.ProgressTracker;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(name = "reextract", mixinStandardHelpOptions = true, version = "reextract 1.0", description = "Re-extracts leads and companies from an html archive written by the scrapers, without a browser")
+public class ArchiveReextractor implements Callable<Integer> {
+    private static final Logger LOG = LogManager.getLogger(ArchiveReextractor.class);
+
+    @Option(names = { "-a",
+            "--archive" }, description = "The archive directory written by the scrapers with --archive. Use it like this: -a path/to/archive")
+    private File archiveDir;
+    @Option(names = { "--parallelism" }, description = "The number of threads used for parsing (default is the number of cores)")
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    @Option(names = { "-v",
+            "--verbose" }, description = "Toggles verbose mode, e.g., prints exceptions")
+    private boolean verbose;
+
+    private Path currentDir = Paths.get("").toAbsolutePath();
+    private Path pathToLeadExcel = currentDir.resolve("reextracted-leads.xlsx").toAbsolutePath();
+    private Path pathToCompanyExcel = currentDir.resolve("reextracted-companies.xlsx").toAbsolutePath();
+    private HtmlExtractor extractor = new HtmlExtractor();
+    private LeadNormalizer normalizer = new LeadNormalizer();
+    private ErrorCollector errors = new ErrorCollector();
+    private ProgressTracker progress = new ProgressTracker();
+
+    public static void main(String[] args) {
+        int exitCode = new CommandLine(new ArchiveReextractor()).execute(args);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public Integer call() {
+        if (archiveDir == null || !archiveDir.isDirectory()) {
+            System.out.println("You need to provide an archive directory!");
+            return 1;
+        }
+        if (verbose) {
+            Configurator.setRootLevel(Level.DEBUG);
+        }
+        AsyncLogs.drain();
+        System.out.println();
+        System.out.println("Starting re-extraction in directory " + currentDir + " with:");
+        System.out.println("\tarchive = " + archiveDir.getAbsolutePath());
+        System.out.println("\tparallelism = " + parallelism);
+        System.out.println();
+
+        try {
+            run();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 1;
+        }
+        return 0;
+    }
+
+    private void run() throws Exception {
+        HtmlArchive archive = new HtmlArchive(archiveDir.toPath().toAbsolutePath(), new Metrics());
+        List<HtmlArchive.Entry> entries = archive.entries();
+        LOG.info("{}Re-extracting archived pages ...", progress.progress(0, entries.size()));
+
+        AtomicInteger count = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<Extraction> extractions;
+        try {
+            extractions = pool.submit(() -> entries.parallelStream()
+                    .map(entry -> {
+                        Extraction extraction = extract(archive, entry);
+                        int current = count.incrementAndGet();
+                        if (current % 1000 == 0) {
+                            LOG.info("{}Re-extracted pages", progress.progress(current, entries.size()));
+                        }
+                        return extraction;
+                    })
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())).get();
+        } finally {
+            pool.shutdown();
+        }
+        // later visits of the same page win
+        extractions.sort(Comparator.comparingLong(extraction -> extraction.entry.getTimestamp()));
+
+        LeadStore leads = new LeadStore();
+        Map<String, Company> companies = new LinkedHashMap<>();
+        Map<String, List<String>> jobTitles = new LinkedHashMap<>();
+        for (Extraction extraction : extractions) {
+            for (Lead lead : extraction.leads) {
+                leads.put(lead);
+            }
+            for (Company company : extraction.companies) {
+                companies.putIfAbsent(company.getLink(), company);
+            }
+            for (Company company : extraction.aboutCompanies) {
+                Company existing = companies.putIfAbsent(company.getLink(), company);
+                if (existing != null) {
+                    existing.setIndustry(company.getIndustry());
+                    existing.setSize(company.getSize());
+                    existing.setEmployeesOnLinkedIn(company.getEmployeesOnLinkedIn());
+                    existing.setDomain(company.getDomain());
+                }
+            }
+            if (extraction.jobTitles != null) {
+                jobTitles.put(extraction.entry.getContext().getOrDefault("profileLink", extraction.entry.getUrl()),
+                        extraction.jobTitles);
+            }
+        }
+        int augmented = 0;
+        for (Map.Entry<String, List<String>> entry : jobTitles.entrySet()) {
+            int index = leads.indexOfProfileLink(entry.getKey());
+            if (index != -1) {
+                Lead lead = leads.get(index);
+                normalizer.applyJobDescriptions(lead, entry.getValue());
+                leads.set(index, lead);
+                augmented++;
+            }
+        }
+
+        AsyncLogs.drain();
+        System.out.println();
+        LOG.info("{}Re-extracted {} leads ({} augmented) and {} companies", progress.progress(count.get(), entries.size()),
+                leads.size(), augmented, companies.size());
+        if (leads.size() > 0) {
+            save(leads.asList(), pathToLeadExcel);
+        }
+        if (companies.size() > 0) {
+            save(new ArrayList<>(companies.values()), pathToCompanyExcel);
+        }
+        AsyncLogs.drain();
+        if (!errors.isEmpty()) {
+            System.out.println();
+            System.out.println(errors.report(verbose));
+        }
+    }
+
+    private Extraction extract(HtmlArchive archive, HtmlArchive.Entry entry) {
+        try {
+            Document doc = Jsoup.parse(archive.load(entry), entry.getUrl());
+            Map<String, String> context = entry.getContext();
+            Extraction extraction = new Extraction(entry);
+            if (entry.getType() == PageType.SEARCH && entry.getUrl().contains("/search/results/people/")) {
+                Company company = new Company();
+                company.setName(context.get("company"));
+                company.setLink(context.get("companyLink"));
+                company.setDomain(context.get("domain"));
+                company.setIndustry(context.get("industry"));
+                extraction.leads.addAll(extractor.extractLeads(doc, company));
+            } else if (entry.getType() == PageType.SEARCH) {
+                extraction.companies.addAll(extractor.extractCompanies(doc));
+            } else if (entry.getType() == PageType.ABOUT) {
+                Company company = new Company();
+                company.setName(context.get("company"));
+                company.setLink(context.getOrDefault("companyLink", entry.getUrl()));
+                if (extractor.extractCompanyInfo(doc, company)) {
+                    extraction.aboutCompanies.add(company);
+                }
+            } else if (entry.getType() == PageType.PROFILE) {
+                extraction.jobTitles = extractor.extractJobTitles(doc, 4);
+            } else if (entry.getType() == PageType.EXPERIENCE) {
+                extraction.jobTitles = extractor.extractExperienceDetails(doc, 4);
+            }
+            errors.succeeded();
+            return extraction;
+        } catch (Exception e) {
+            errors.error("Failed to re-extract " + entry.getType() + " page " + entry.getUrl() + "! Skip it.", e);
+            return null;
+        }
+    }
+
+    private <T> void save(List<T> records, Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        ExcelDocument doc = new ExcelDocument();
+        doc.getActiveSheet().insertTable("A1", records);
+        doc.saveAs(path.toString());
+        doc.close();
+        LOG.info("{}Saved results at {}", progress.progress(), path);
+    }
+
+    private static class Extraction {
+        private HtmlArchive.Entry entry;
+        private List<Lead> leads = new ArrayList<>();
+        private List<Company> companies = new ArrayList<>();
+        private List<Company> aboutCompanies = new ArrayList<>();
+        private List<String> jobTitles;
+
+        Extraction(HtmlArchive.Entry entry) {
+            this.entry = entry;
+        }
+    }
+}
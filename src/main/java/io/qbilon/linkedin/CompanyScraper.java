@@ -2,27 +2,84 @@
 //DEPS info.picocli:picocli:4.7.1
 //DEPS eu.easyrpa:easy-rpa-openframework-excel:1.0.0
 //DEPS org.apache.logging.log4j:log4j-core:2.19.0
+//DEPS org.apache.logging.log4j:log4j-layout-template-json:2.19.0
+//DEPS com.lmax:disruptor:3.4.4
+//DEPS org.jsoup:jsoup:1.15.4
+//DEPS com.google.code.gson:gson:2.10.1
 
+//SOURCES DaemonJob.java
 //SOURCES util/Util.java
+//SOURCES util/ProgressTracker.java
 //SOURCES util/SecondLvlDomains.java
 //SOURCES util/LinkShortener.java
+//SOURCES util/Metrics.java
+//SOURCES util/LatencyHistogram.java
+//SOURCES util/NavigationTimings.java
+//SOURCES util/MonitoringOptions.java
+//SOURCES util/ScrapeContext.java
+//SOURCES util/ScrapeEvents.java
+//SOURCES util/ErrorCollector.java
+//SOURCES util/AsyncLogs.java
+//SOURCES util/ResilienceOptions.java
+//SOURCES util/SelectorRegistry.java
+//SOURCES util/TimeoutPolicy.java
+//SOURCES util/RetryQueue.java
+//SOURCES util/CircuitBreaker.java
+//SOURCES util/AccountPool.java
+//SOURCES util/RateBudget.java
+//SOURCES util/SessionKeeper.java
+//SOURCES util/PageRecycler.java
+//SOURCES util/SearchPartitioner.java
+//SOURCES util/TtlCache.java
+//SOURCES util/PageType.java
+//SOURCES util/HtmlArchive.java
+//SOURCES util/HtmlExtractor.java
+//SOURCES util/HttpFetcher.java
+//SOURCES util/LeadNormalizer.java
+//SOURCES util/SpecialChars.java
+//SOURCES util/JobDescriptors.java
+//SOURCES util/RemovableNameSegments.java
+//SOURCES model/Lead.java
 //SOURCES model/Company.java
 
+//FILES log4j2.xml=../../../../resources/log4j2.xml
+//FILES log4j2.component.properties=../../../../resources/log4j2.component.properties
+
 //JAVAC_OPTIONS -encoding UTF8
 
 package io.qbilon.linkedin;
 
-import java.net.MalformedURLException;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.ParseException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.jsoup.Jsoup;
+
 import com.microsoft.playwright.Browser;
 import com.microsoft.playwright.BrowserContext;
 import com.microsoft.playwright.Locator;
@@ -31,15 +88,33 @@ import com.microsoft.playwright.Playwright;
 
 import eu.easyrpa.openframework.excel.ExcelDocument;
 import io.qbilon.linkedin.model.Company;
+import io.qbilon.linkedin.util.AsyncLogs;
+import io.qbilon.linkedin.util.ErrorCollector;
+import io.qbilon.linkedin.util.HtmlArchive;
+import io.qbilon.linkedin.util.HtmlExtractor;
+import io.qbilon.linkedin.util.HttpFetcher;
 import io.qbilon.linkedin.util.LinkShortener;
+import io.qbilon.linkedin.util.Metrics;
+import io.qbilon.linkedin.util.MonitoringOptions;
+import io.qbilon.linkedin.util.NavigationTimings;
+import io.qbilon.linkedin.util.PageType;
+import io.qbilon.linkedin.util.ResilienceOptions;
+import io.qbilon.linkedin.util.SearchPartitioner;
+import io.qbilon.linkedin.util.SearchPartitioner.Partition;
+import io.qbilon.linkedin.util.ScrapeContext;
+import io.qbilon.linkedin.util.ScrapeEvents;
 import io.qbilon.linkedin.util.SecondLvlDomains;
+import io.qbilon.linkedin.util.TtlCache;
 import io.qbilon.linkedin.util.Util;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 
 @Command(name = "scrapeCompanies", mixinStandardHelpOptions = true, version = "scrapeCompanies 1.0", description = "Scrapes companies from LinkedIn for a given set of locations, industries and sizes")
-public class CompanyScraper implements Callable<Integer> {
+public class CompanyScraper implements Callable<Integer>, DaemonJob {
+    private static final Logger LOG = LogManager.getLogger(CompanyScraper.class);
+
     @Option(names = { "-e", "--email" }, description = "The email to be used for login in LinkedIn")
     private String email;
     @Option(names = { "-p", "--password" }, description = "The password to be used for login in LinkedIn")
@@ -62,17 +137,43 @@ public class CompanyScraper implements Callable<Integer> {
     @Option(names = { "-d",
         "-delay" }, description = "An optional delay in ms to use for all website interactions (default is 1000ms, variance is 10%)", defaultValue = "1000")
     private int delay;
+    @Option(names = {
+            "--result-cap" }, description = "The maximum number of results LinkedIn lets us reach for a single search. Larger searches are split into partitions by size, location and industry (default is 1000)", defaultValue = "1000")
+    private int resultCap;
+    @Option(names = {
+            "--partition-workers" }, description = "The number of browsers that scrape search partitions in parallel (default is 1)", defaultValue = "1")
+    private int partitionWorkers;
+    @Option(names = {
+            "--refresh-older-than" }, description = "The age in days after which cached about page data of a company is scraped again. 0 disables the cache (default is 30)", defaultValue = "30")
+    private int refreshOlderThan;
+    @Option(names = {
+            "--archive" }, description = "An optional directory in which the html of all visited pages is archived for offline re-extraction. Use it like this: --archive path/to/archive")
+    private File archiveDir;
+    @Option(names = {
+            "--http-pages" }, description = "Page types that are fetched without a browser. If the required markup is missing the browser is used instead. Supported is ABOUT. Use it like this: --http-pages ABOUT")
+    private List<PageType> httpPages = new ArrayList<>();
+    @Mixin
+    private MonitoringOptions monitoring;
+    @Mixin
+    private ResilienceOptions resilience;
 
     private List<String> translatedSizes;
 
     private Path currentDir = Paths.get("").toAbsolutePath();
     private Path pathToContext = currentDir.resolve("state.json").toAbsolutePath();
     private Path pathToExcel = currentDir.resolve("companies.xlsx").toAbsolutePath();
+    private Path pathToCompanyCache = currentDir.resolve("companies.cache").toAbsolutePath();
     private SecondLvlDomains slds = new SecondLvlDomains();
     private LinkShortener shortener = new LinkShortener();
-    private List<String> errors = new ArrayList<>();
-    private List<String> warnings = new ArrayList<>();
+    private ErrorCollector errors;
     private Util util;
+    private Metrics metrics;
+    private NavigationTimings navigationTimings;
+    private TtlCache<Company> companyCache;
+    private HtmlArchive archive;
+    private HtmlExtractor extractor = new HtmlExtractor();
+    private HttpFetcher httpFetcher;
+    private int augmentedCount = 0;
 
     private Map<String, String> companySizesMap = Map.of(
             "10", "companySize-B",
@@ -94,6 +195,7 @@ public class CompanyScraper implements Callable<Integer> {
         validateInput();
         init();
 
+        AsyncLogs.drain();
         System.out.println();
         System.out.println("Starting LinkedIn Company Scraper in directory " + currentDir + " with:");
         System.out.println("\temail = " + email);
@@ -103,23 +205,61 @@ public class CompanyScraper implements Callable<Integer> {
         System.out.println("\tsizes = " + String.join(", ", sizes));
         System.out.println("\tlimit = " + limit);
         System.out.println("\tdelay = " + delay);
+        System.out.println("\tresultCap = " + resultCap);
+        System.out.println("\tpartitionWorkers = " + partitionWorkers);
+        System.out.println("\trefreshOlderThan = " + refreshOlderThan);
+        if (archiveDir != null) {
+            System.out.println("\tarchive = " + archiveDir.getAbsolutePath());
+        }
+        System.out.println("\thttpPages = " + httpPages);
+        System.out.println("\tmonitoring = " + monitoring.describe());
+        System.out.println("\tresilience = " + resilience.describe());
         System.out.println();
 
         try (Playwright playwright = Playwright.create()) {
             run(playwright);
+        } catch (ErrorCollector.FailFastException e) {
+            AsyncLogs.drain();
+            System.out.println(e.getMessage());
+            System.out.println(errors.report(verbose));
+            return 1;
         } catch (Exception e) {
+            AsyncLogs.drain();
             if (verbose) {
                 e.printStackTrace();
             }
             System.out.println(
                     "ERROR: Something went wrong. Sometimes this is due to a timing error. In this case just retry it. If the error persists, you could toggle verbose mode with '-v' in order to get more information");
             return 1;
+        } finally {
+            metrics.close();
         }
         return 0;
     }
 
     private void init() {
-        util = new Util(verbose, delay);
+        metrics = monitoring.createMetrics();
+        errors = monitoring.createErrorCollector();
+        if (verbose) {
+            Configurator.setRootLevel(Level.DEBUG);
+        }
+        util = new Util(verbose, delay, metrics);
+        navigationTimings = monitoring.createNavigationTimings(metrics);
+        util.setNavigationTimings(navigationTimings);
+        util.setTimeouts(resilience.createTimeoutPolicy(metrics));
+        util.setSession(resilience.createSessionKeeper(pathToContext, email, password, metrics));
+        util.setPageRecycler(resilience.createPageRecycler(metrics));
+        util.setWaitUntil(resilience.waitUntil());
+        try {
+            util.setSelectors(resilience.createSelectorRegistry(metrics));
+        } catch (IOException e) {
+            System.out.println("Could not read the selectors file: " + e.getMessage());
+            System.exit(1);
+        }
+        companyCache = new TtlCache<>(pathToCompanyCache, new CompanyCodec(), Duration.ofDays(refreshOlderThan));
+        if (archiveDir != null) {
+            archive = new HtmlArchive(archiveDir.toPath().toAbsolutePath(), metrics);
+        }
     }
 
     private void validateInput() {
@@ -132,162 +272,468 @@ public class CompanyScraper implements Callable<Integer> {
             System.out.println("You need to provide a password!");
             System.exit(1);
         }
-        if (locations == null || locations.isEmpty()) {
-            System.out.println("You need to provide at least one location!");
+        String error = validationError();
+        if (error != null) {
+            System.out.println(error);
             System.exit(1);
         }
+        translatedSizes = sizes.stream().map(size -> companySizesMap.get(size)).collect(Collectors.toList());
+    }
+
+    @Override
+    public String validationError() {
+        if (locations == null || locations.isEmpty()) {
+            return "You need to provide at least one location!";
+        }
         if (industries == null || industries.isEmpty()) {
-            System.out.println("You need to provide at least one industry!");
-            System.exit(1);
+            return "You need to provide at least one industry!";
         }
         if (sizes == null || sizes.isEmpty()) {
-            System.out.println("You need to provide at least one company size!");
-            System.exit(1);
+            return "You need to provide at least one company size!";
         }
-        translatedSizes = sizes.stream().map(size -> companySizesMap.get(size)).collect(Collectors.toList());
+        return null;
     }
 
-    private void run(Playwright playwright) throws MalformedURLException, ParseException {
-        Browser browser = util.createBrowser(playwright, pathToContext);
-        BrowserContext context = browser.contexts().get(0);
-        Page page = util.loginToLinkedIn(context, email, password);
-
-        navigateToInitialSearchPage(page);
-
-        int currentPage = 1;
-        Map<String, List<String>> urlParams = util.urlParams(new URL(page.url()));
-        List<Company> companies = new ArrayList<>();
+    @Override
+    public Set<String> ignoredOptions() {
+        return Set.of("--email", "--password", "--partition-workers");
+    }
 
-        System.out.println();
-        while (!util.isEmptySearchPage(page, "") && (limit == -1 || limit >= companies.size())) {
-            System.out.println(util.progress(0, companies.size()) + "Scraping raw data for company search page " + currentPage);
-            scrapeRawCompanies(page, companies);
-            currentPage++;
-            page.navigate(createCompanySearchUrl(urlParams, currentPage));
-            util.doWait();
-        }
+    @Override
+    public Util createUtil(Metrics metrics) {
+        return new Util(verbose, delay, metrics);
+    }
 
-        System.out.println();
-        int currentCount = 1;
-        for (Company company : companies) {
-            System.out.println(util.progress(currentCount, companies.size()) + " Scraping augmented data for "
-                    + company.getName() + ".");
-            scrapeAugmentedCompany(page, company);
-            util.doWait();
-            currentCount++;
+    @Override
+    public Map<String, Object> runJob(BrowserContext context, Page page, Path outputDir, Util util,
+            ErrorCollector errors) throws IOException, InterruptedException {
+        this.util = util;
+        this.metrics = util.getMetrics();
+        this.errors = errors;
+        // the workers would need their own login
+        this.partitionWorkers = 1;
+        translatedSizes = sizes.stream().map(size -> companySizesMap.get(size)).collect(Collectors.toList());
+        pathToExcel = outputDir.resolve("companies.xlsx");
+        companyCache = new TtlCache<>(pathToCompanyCache, new CompanyCodec(), Duration.ofDays(refreshOlderThan));
+        if (archiveDir != null) {
+            archive = new HtmlArchive(archiveDir.toPath().toAbsolutePath(), metrics);
         }
+        List<Company> companies = discover(context, page, null);
+        saveCompanies(companies);
+        return Map.of("companies", companies.size(), "file", pathToExcel.toString());
+    }
 
-        util.touchFile(pathToExcel);
-        ExcelDocument doc = new ExcelDocument();
-        doc.getActiveSheet().insertTable("A1", companies);
-        doc.saveAs(pathToExcel.toString());
-        doc.close();
+    private void run(Playwright playwright) throws IOException, ParseException, InterruptedException {
+        Browser browser = util.createBrowser(playwright, pathToContext);
+        BrowserContext context = browser.contexts().get(0);
+        ScrapeContext.setPhase("login");
+        Page page = util.loginToLinkedIn(context, email, password);
+        List<Company> companies = discover(context, page, null);
+        saveCompanies(companies);
 
         // Save current browser state
         context.storageState(new BrowserContext.StorageStateOptions().setPath(pathToContext));
         context.close();
         browser.close();
 
-        if(warnings.size() > 0 || errors.size() > 0) {
+        AsyncLogs.drain();
+        if (!errors.isEmpty()) {
             System.out.println("During scraping the following Warnings/Errors occurred\n");
-            System.out.println("WARNINGS:");
-            for (String warning : warnings) {
-                System.out.println("\t" + warning);
-            }
-            System.out.println("\nERRORS:");
-            for (String error : errors) {
-                System.out.println("\t" + error);
-            }
+            System.out.println(errors.report(verbose));
         }
 
         System.out.println();
+        System.out.println("Metrics:");
+        System.out.println(metrics.summary());
+        System.out.println("Latencies [ms]:");
+        System.out.println(metrics.latencyTable());
+        System.out.println("Adaptive timeouts:");
+        System.out.println(util.getTimeouts().report());
+        if (navigationTimings != null) {
+            System.out.println("Navigation timings (average per page) [ms]:");
+            System.out.println(navigationTimings.report());
+        }
         System.out.println("Finished Scraping!");
         System.out.println("\nPlease review the domains of the scraped companies under " + pathToExcel.toString()
                 + "! They might contain link shortener links");
     }
 
-    
+    /**
+     * Prepares the scraper for the {@link ProspectScraper}, which shares its
+     * browser session and bookkeeping with the company discovery.
+     */
+    void initForPipeline(List<String> locations, List<String> industries, List<String> sizes, int limit,
+            int resultCap, int refreshOlderThan, boolean verbose, Util util, Metrics metrics, ErrorCollector errors) {
+        this.locations = locations;
+        this.industries = industries;
+        this.sizes = sizes;
+        this.limit = limit;
+        this.resultCap = resultCap;
+        this.refreshOlderThan = refreshOlderThan;
+        this.verbose = verbose;
+        this.partitionWorkers = 1;
+        this.util = util;
+        this.metrics = metrics;
+        this.errors = errors;
+        translatedSizes = sizes.stream().map(size -> companySizesMap.get(size)).collect(Collectors.toList());
+        companyCache = new TtlCache<>(pathToCompanyCache, new CompanyCodec(), Duration.ofDays(refreshOlderThan));
+    }
 
-    private void scrapeAugmentedCompany(Page page, Company company) throws MalformedURLException, ParseException {
+    /**
+     * Searches the companies and scrapes their about pages. If a consumer is
+     * given, each company is augmented right after the search page it was found
+     * on and handed over if that worked, so its leads can be searched while the
+     * discovery is still paging.
+     */
+    List<Company> discover(BrowserContext context, Page page, Consumer<Company> augmented)
+            throws IOException, InterruptedException {
+        if (!httpPages.isEmpty()) {
+            httpFetcher = HttpFetcher.fromStorageState(context.storageState(), util.getRateBudget());
+            util.setHttpFetcher(httpFetcher);
+        }
+        if (refreshOlderThan > 0) {
+            companyCache.load();
+        }
+
+        navigateToInitialSearchPage(page);
+
+        Map<String, List<String>> urlParams = util.urlParams(new URL(page.url()));
+        // deduplicated by link, as partitions may overlap
+        Map<String, Company> scrapedCompanies = Collections.synchronizedMap(new LinkedHashMap<>());
+
+        AsyncLogs.drain();
+        System.out.println();
+        ScrapeContext.setPhase("scrapeRawCompanies");
+        page = scrapePartitions(context, page, new Partition(urlParams), scrapedCompanies, augmented);
+        List<Company> companies = new ArrayList<>(scrapedCompanies.values());
+
+        if (augmented == null) {
+            AsyncLogs.drain();
+            System.out.println();
+            ScrapeContext.setPhase("scrapeAugmentedCompany");
+            for (Company company : companies) {
+                page = util.recycle(page);
+                augmentCompany(page, company, companies.size());
+            }
+        }
+        ScrapeContext.clearTarget();
+        if (refreshOlderThan > 0) {
+            companyCache.save();
+            LOG.info("{}Company cache: {}", util.progress(), companyCache.stats());
+        }
+        if (httpFetcher != null) {
+            LOG.info("{}HTTP engine: {}", util.progress(), httpFetcher.stats());
+        }
+        return companies;
+    }
+
+    void saveCompanies(List<Company> companies) {
+        ScrapeContext.setPhase("export");
+        ScrapeEvents.ExcelIO excelEvent = new ScrapeEvents.ExcelIO("write", pathToExcel.toString());
+        long excelStart = System.nanoTime();
+        excelEvent.begin();
         try {
-            page.navigate(company.getLink());
-            page.waitForSelector("dl.overflow-hidden");
-            Locator infoTable = page.locator("dl.overflow-hidden");
-            // get all children via xpath
-            Locator infos = infoTable.locator("xpath=*");
-            String currentHeading = "";
-            for (Locator info : infos.all()) {
-                String tagName = info.elementHandle().getProperty("tagName").toString();
-                if (tagName.equalsIgnoreCase("dt")) {
-                    currentHeading = info.innerText().trim();
-                } else {
-                    if ("Branche".equalsIgnoreCase(currentHeading)) {
-                        company.setIndustry(info.innerText().trim());
-                    }
-                    if ("Größe".equalsIgnoreCase(currentHeading)) {
-                        String text = info.innerText().trim();
-                        if (text.contains(" auf LinkedIn")) {
-                            company.setEmployeesOnLinkedIn(text.substring(0, text.indexOf(" auf LinkedIn")));
-                        } else {
-                            company.setSize(text);
+            util.touchFile(pathToExcel);
+            ExcelDocument doc = new ExcelDocument();
+            doc.getActiveSheet().insertTable("A1", companies);
+            doc.saveAs(pathToExcel.toString());
+            doc.close();
+            excelEvent.finish(ScrapeEvents.OK);
+        } catch (RuntimeException e) {
+            excelEvent.finish(e);
+            throw e;
+        } finally {
+            metrics.recordSince("excel_io", excelStart, "operation", "write");
+        }
+    }
+
+    private boolean augmentCompany(Page page, Company company, int total) {
+        ScrapeContext.setCompany(company.getName());
+        augmentedCount++;
+        Company cached = refreshOlderThan > 0 ? companyCache.get(company.getLink()) : null;
+        if (refreshOlderThan > 0) {
+            metrics.increment(cached != null ? "cache_hits" : "cache_misses", "cache", "company");
+        }
+        if (cached != null) {
+            LOG.info("{} Using cached augmented data for {}.", util.progress(augmentedCount, total),
+                    company.getName());
+            company.setIndustry(cached.getIndustry());
+            company.setSize(cached.getSize());
+            company.setEmployeesOnLinkedIn(cached.getEmployeesOnLinkedIn());
+            company.setDomain(cached.getDomain());
+            checkDomain(company);
+            return true;
+        }
+        LOG.info("{} Scraping augmented data for {}.", util.progress(augmentedCount, total), company.getName());
+        boolean scraped = scrapeAugmentedCompany(page, company);
+        if (scraped && refreshOlderThan > 0) {
+            companyCache.put(company.getLink(), company);
+        }
+        util.doWait();
+        return scraped;
+    }
+
+    // returns the page to continue with
+    private Page scrapePartitions(BrowserContext context, Page page, Partition root,
+            Map<String, Company> companies, Consumer<Company> augmented) throws InterruptedException {
+        SearchPartitioner partitioner = new SearchPartitioner(util, errors, resultCap,
+                List.of("companySize", "companyHqGeo", "industryCompanyVertical"));
+        if (partitionWorkers <= 1) {
+            return partitioner.partition(page, root, partition -> createCompanySearchUrl(partition.getUrlParams(), 1),
+                    (current, partition) -> scrapePartition(util, current, partition, 1, true, companies, augmented));
+        }
+
+        // the workers start from the current session instead of logging in again
+        String storageState = context.storageState();
+        Partition poison = new Partition(Map.of());
+        BlockingQueue<Partition> partitions = new LinkedBlockingQueue<>();
+        AtomicReference<RuntimeException> abort = new AtomicReference<>();
+        ExecutorService workers = Executors.newFixedThreadPool(partitionWorkers);
+        for (int i = 0; i < partitionWorkers; i++) {
+            workers.submit(() -> {
+                // Playwright is not thread safe, so every worker needs its own instance
+                ScrapeContext.setPhase("scrapeRawCompanies");
+                Util workerUtil = util.forWorker();
+                try (Playwright playwright = Playwright.create()) {
+                    Page workerPage = workerUtil.openSession(playwright, storageState, email, password);
+                    Partition partition = partitions.take();
+                    while (abort.get() == null && partition != poison) {
+                        workerPage = workerUtil.recycle(workerPage);
+                        try {
+                            // only the ProspectScraper augments while paging, and it runs without workers
+                            workerPage = scrapePartition(workerUtil, workerPage, partition, 2, false, companies, null);
+                        } catch (Exception e) {
+                            errors.error("ERROR: Failed to scrape partition " + partition + "! Its companies are missing.", e);
                         }
+                        partition = partitions.take();
                     }
-                    if ("Website".equalsIgnoreCase(currentHeading)) {
-                        Locator link = info.locator("a");
-                        company.setDomain(getDomain(link.getAttribute("href").trim()));
+                    workerPage.context().browser().close();
+                } catch (ErrorCollector.FailFastException e) {
+                    abort.compareAndSet(null, e);
+                } catch (Exception e) {
+                    try {
+                        errors.error("ERROR: A partition worker failed! The queued partitions are left to the other workers.", e);
+                    } catch (ErrorCollector.FailFastException failFast) {
+                        abort.compareAndSet(null, failFast);
                     }
                 }
+            });
+        }
+        try {
+            page = partitioner.partition(page, root, partition -> createCompanySearchUrl(partition.getUrlParams(), 1),
+                    (current, partition) -> {
+                        // no need to search on once the workers gave up
+                        if (abort.get() != null) {
+                            throw abort.get();
+                        }
+                        // the first page is open anyway, the workers continue with the second
+                        if (limit == -1 || limit >= companies.size()) {
+                            ScrapeContext.setSearch(partition.toString(), 1);
+                            try {
+                                scrapeRawCompanies(util, current, companies);
+                            } catch (Exception e) {
+                                errors.error("ERROR: Failed to scrape the first page of partition " + partition
+                                        + "! Its companies are missing.", e);
+                            }
+                        }
+                        partitions.add(partition);
+                        return current;
+                    });
+        } finally {
+            for (int i = 0; i < partitionWorkers; i++) {
+                partitions.add(poison);
             }
-            String domain = company.getDomain();
-            if (shortener.contains(domain)) {
-                warnings.add("WARNING: Detected link shortener for domain of " + company.getName());
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        if (abort.get() != null) {
+            throw abort.get();
+        }
+
+        // partitions left behind by failed workers are scraped on the current page
+        Partition partition;
+        while ((partition = partitions.poll()) != null) {
+            if (partition == poison) {
+                continue;
             }
-        } catch (Exception e) {
-            errors.add("ERROR: Something went wrong while fetching augmented data for " + company.getName() + "! We skipped it!");
-            if (verbose) {
-                errors.add(util.stackTraceToString(e));
+            LOG.info("Scraping partition {} that no worker took", partition);
+            page = util.recycle(page);
+            try {
+                page = scrapePartition(util, page, partition, 2, false, companies, null);
+            } catch (Exception e) {
+                errors.error("ERROR: Failed to scrape partition " + partition + "! Its companies are missing.", e);
             }
         }
+        return page;
     }
 
-    private String getDomain(String urlString) throws MalformedURLException {
-        URL url = new URL(urlString);
-        String host = url.getHost();
-        String[] segments = host.split("\\.");
-        // take the last two segments
-        String seg1 = segments[segments.length - 2];
-        String seg2 = segments[segments.length - 1];
-        String domain = seg1 + "." + seg2;
-        if (segments.length > 2) {
-            // maybe its a second level domain?
-            if (slds.contains(domain)) {
-                // take the last three segments
-                domain = segments[segments.length - 3] + "." + domain;
+    // scrapes the partition from the given search page on, which is already open if opened is set; returns the page
+    // to continue with, the partition workers pass their own util
+    private Page scrapePartition(Util threadUtil, Page page, Partition partition, int currentPage, boolean opened,
+            Map<String, Company> companies, Consumer<Company> augmented) {
+        ScrapeContext.setSearch(partition.toString(), currentPage);
+        if (!opened) {
+            threadUtil.navigate(page, createCompanySearchUrl(partition.getUrlParams(), currentPage), PageType.SEARCH);
+            threadUtil.doWait();
+        }
+        while (!threadUtil.isEmptySearchPage(page, "") && (limit == -1 || limit >= companies.size())) {
+            LOG.info("{}Scraping raw data for company search page {} of partition {}",
+                    threadUtil.progress(0, companies.size()), currentPage, partition);
+            List<Company> found = scrapeRawCompanies(threadUtil, page, companies);
+            if (augmented != null) {
+                ScrapeContext.setPhase("scrapeAugmentedCompany");
+                for (Company company : found) {
+                    if (augmentCompany(page, company, companies.size())) {
+                        augmented.accept(company);
+                    }
+                }
+                ScrapeContext.clearTarget();
+                ScrapeContext.setPhase("scrapeRawCompanies");
             }
+            currentPage++;
+            ScrapeContext.setSearch(partition.toString(), currentPage);
+            page = threadUtil.recycle(page);
+            threadUtil.navigate(page, createCompanySearchUrl(partition.getUrlParams(), currentPage), PageType.SEARCH);
+            threadUtil.doWait();
         }
-        return domain;
+        return page;
     }
 
-    private void scrapeRawCompanies(Page page, List<Company> companies) {
-        page.waitForSelector(".search-results-container");
-        Locator resultContainer = page.locator(".search-results-container");
-        Locator resultItems = resultContainer.locator("li.reusable-search__result-container");
-        for (Locator resultItem : resultItems.all()) {
+    private boolean scrapeAugmentedCompany(Page page, Company company) {
+        if (httpFetcher != null && httpPages.contains(PageType.ABOUT)) {
+            if (scrapeAugmentedCompanyViaHttp(company)) {
+                errors.succeeded();
+                return true;
+            }
+            httpFetcher.markFallback();
+        }
+        try {
+            util.navigate(page, company.getLink(), PageType.ABOUT);
+            util.waitUntilReady(page, PageType.ABOUT);
+            if (archive != null) {
+                archive.archive(PageType.ABOUT, page.url(), page.content(), HtmlArchive.context(
+                        "company", company.getName(),
+                        "companyLink", company.getLink()));
+            }
+            ScrapeEvents.Extract extractEvent = new ScrapeEvents.Extract(PageType.ABOUT);
+            long extractStart = System.nanoTime();
+            extractEvent.begin();
             try {
-                if (limit == -1 || limit >= companies.size()) {
-                    Company company = new Company();
-                    Locator titleSpan = resultItem.locator("span.entity-result__title-text");
-                    company.setName(titleSpan.textContent().trim());
-                    company.setLink(titleSpan.locator("a").getAttribute("href") + "about");
-                    companies.add(company);
-                } else {
-                    System.out.println(util.progress() + "Reached limit of " + limit + " companies!");
-                    break;
+                Locator infoTable = page.locator(util.selector(PageType.ABOUT));
+                // get all children via xpath
+                Locator infos = infoTable.locator("xpath=*");
+                String currentHeading = "";
+                for (Locator info : infos.all()) {
+                    String tagName = info.elementHandle().getProperty("tagName").toString();
+                    if (tagName.equalsIgnoreCase("dt")) {
+                        currentHeading = info.innerText().trim();
+                    } else {
+                        if ("Branche".equalsIgnoreCase(currentHeading)) {
+                            company.setIndustry(info.innerText().trim());
+                        }
+                        if ("Größe".equalsIgnoreCase(currentHeading)) {
+                            String text = info.innerText().trim();
+                            if (text.contains(" auf LinkedIn")) {
+                                company.setEmployeesOnLinkedIn(text.substring(0, text.indexOf(" auf LinkedIn")));
+                            } else {
+                                company.setSize(text);
+                            }
+                        }
+                        if ("Website".equalsIgnoreCase(currentHeading)) {
+                            Locator link = info.locator("a");
+                            company.setDomain(slds.getDomain(link.getAttribute("href").trim()));
+                        }
+                    }
                 }
-            } catch (Exception e) {
-                errors.add("ERROR: Something went wrong during try to fetch a raw company dataset. Skip it!");
-                errors.add(util.stackTraceToString(e));
+                extractEvent.setItems(1);
+                extractEvent.finish(ScrapeEvents.OK);
+            } catch (RuntimeException e) {
+                extractEvent.finish(e);
+                throw e;
+            } finally {
+                metrics.recordLatency(PageType.ABOUT, "extract", extractStart);
             }
+            checkDomain(company);
+            errors.succeeded();
+            return true;
+        } catch (Exception e) {
+            errors.error("ERROR: Something went wrong while fetching augmented data for " + company.getName() + "! We skipped it!", e);
+            return false;
+        }
+    }
+
+    private boolean scrapeAugmentedCompanyViaHttp(Company company) {
+        try {
+            long fetchStart = System.nanoTime();
+            String html = httpFetcher.fetch(company.getLink());
+            metrics.recordSince("http_fetch", fetchStart, "type", PageType.ABOUT.name());
+            if (html == null || !extractor.extractCompanyInfo(Jsoup.parse(html, company.getLink()), company)) {
+                return false;
+            }
+            if (archive != null) {
+                archive.archive(PageType.ABOUT, company.getLink(), html, HtmlArchive.context(
+                        "company", company.getName(),
+                        "companyLink", company.getLink()));
+            }
+            checkDomain(company);
+            return true;
+        } catch (Exception e) {
+            // the browser gets another chance
+            return false;
+        }
+    }
+
+    private void checkDomain(Company company) {
+        String domain = company.getDomain();
+        if (shortener.contains(domain)) {
+            errors.warning("WARNING: Detected link shortener for domain of " + company.getName());
+        }
+    }
+
+    // returns the companies that were not known yet
+    private List<Company> scrapeRawCompanies(Util threadUtil, Page page, Map<String, Company> companies) {
+        threadUtil.waitUntilReady(page, PageType.SEARCH);
+        if (archive != null) {
+            archive.archive(PageType.SEARCH, page.url(), page.content(), Map.of());
+        }
+        ScrapeEvents.Extract extractEvent = new ScrapeEvents.Extract(PageType.SEARCH);
+        long extractStart = System.nanoTime();
+        extractEvent.begin();
+        try {
+            Locator resultContainer = page.locator(threadUtil.selector(PageType.SEARCH));
+            Locator resultItems = resultContainer.locator("li.reusable-search__result-container");
+            List<Company> found = new ArrayList<>();
+            int items = 0;
+            for (Locator resultItem : resultItems.all()) {
+                try {
+                    if (limit == -1 || limit >= companies.size()) {
+                        Company company = new Company();
+                        Locator titleSpan = resultItem.locator("span.entity-result__title-text");
+                        company.setName(titleSpan.textContent().trim());
+                        company.setLink(titleSpan.locator("a").getAttribute("href") + "about");
+                        if (companies.putIfAbsent(company.getLink(), company) != null) {
+                            metrics.increment("dedup_drops", "type", "company");
+                        } else {
+                            found.add(company);
+                        }
+                        items++;
+                        errors.succeeded();
+                    } else {
+                        LOG.info("{}Reached limit of {} companies!", threadUtil.progress(), limit);
+                        break;
+                    }
+                } catch (Exception e) {
+                    errors.error("ERROR: Something went wrong during try to fetch a raw company dataset. Skip it!", e);
+                }
+            }
+            extractEvent.setItems(items);
+            extractEvent.finish(ScrapeEvents.OK);
+            return found;
+        } catch (RuntimeException e) {
+            extractEvent.finish(e);
+            throw e;
+        } finally {
+            metrics.recordLatency(PageType.SEARCH, "extract", extractStart);
         }
     }
 
@@ -306,8 +752,8 @@ public class CompanyScraper implements Callable<Integer> {
     }
 
     private void navigateToInitialSearchPage(Page page) {
-        System.out.println(util.progress() + "Navigating to search page ...");
-        page.navigate("https://www.linkedin.com/search/results/companies/?origin=SWITCH_SEARCH_VERTICAL");
+        LOG.info("{}Navigating to search page ...", util.progress());
+        util.navigate(page, "https://www.linkedin.com/search/results/companies/?origin=SWITCH_SEARCH_VERTICAL", PageType.SEARCH);
         util.buttonWithInput(page, "Standorte", "Ort hinzufügen", locations);
         util.buttonWithMultiSelection(page, "Unternehmensgröße", translatedSizes);
         util.buttonWithInput(page, "Branche", "Branche hinzufügen", industries);
@@ -317,4 +763,37 @@ public class CompanyScraper implements Callable<Integer> {
                 url.contains("companyHqGeo") &&
                 url.contains("sid"));
     }
+
+    private static class CompanyCodec implements TtlCache.Codec<Company> {
+        @Override
+        public void write(DataOutputStream out, Company company) throws IOException {
+            writeNullable(out, company.getName());
+            writeNullable(out, company.getIndustry());
+            writeNullable(out, company.getSize());
+            writeNullable(out, company.getEmployeesOnLinkedIn());
+            writeNullable(out, company.getDomain());
+        }
+
+        @Override
+        public Company read(DataInputStream in) throws IOException {
+            Company company = new Company();
+            company.setName(readNullable(in));
+            company.setIndustry(readNullable(in));
+            company.setSize(readNullable(in));
+            company.setEmployeesOnLinkedIn(readNullable(in));
+            company.setDomain(readNullable(in));
+            return company;
+        }
+
+        private void writeNullable(DataOutputStream out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        private String readNullable(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    }
 }
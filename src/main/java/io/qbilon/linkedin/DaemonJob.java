@@ -0,0 +1,41 @@
+package io.qbilon.linkedin;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+
+import io.qbilon.linkedin.util.ErrorCollector;
+import io.qbilon.linkedin.util.Metrics;
+import io.qbilon.linkedin.util.Util;
+
+/**
+ * A scraper whose parsed options can be run as a job of the
+ * {@link ScrapeDaemon}. The daemon provides the logged in session, so the
+ * credentials are not part of the job.
+ */
+interface DaemonJob {
+
+    /**
+     * Returns null if the options are complete, otherwise the message for the
+     * user.
+     */
+    String validationError();
+
+    /**
+     * The options of the scraper that a job does not apply, e.g. because the
+     * daemon owns the session. A job that sets one of them is rejected.
+     */
+    Set<String> ignoredOptions();
+
+    Util createUtil(Metrics metrics);
+
+    /**
+     * Runs the job on the owner thread of the daemon and returns a summary of
+     * its results. All files of the job are written to the output directory.
+     */
+    Map<String, Object> runJob(BrowserContext context, Page page, Path outputDir, Util util, ErrorCollector errors)
+            throws Exception;
+}
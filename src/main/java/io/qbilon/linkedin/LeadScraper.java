@@ -2,42 +2,92 @@
 //DEPS info.picocli:picocli:4.7.1
 //DEPS eu.easyrpa:easy-rpa-openframework-excel:1.0.0
 //DEPS org.apache.logging.log4j:log4j-core:2.19.0
+//DEPS org.apache.logging.log4j:log4j-layout-template-json:2.19.0
+//DEPS com.lmax:disruptor:3.4.4
+//DEPS org.jsoup:jsoup:1.15.4
+//DEPS com.google.code.gson:gson:2.10.1
 
+//SOURCES DaemonJob.java
 //SOURCES util/Util.java
+//SOURCES util/ProgressTracker.java
 //SOURCES util/SpecialChars.java
 //SOURCES util/JobDescriptors.java
 //SOURCES util/RemovableNameSegments.java
+//SOURCES util/LeadNormalizer.java
+//SOURCES util/LeadRecordFile.java
+//SOURCES util/TtlCache.java
+//SOURCES util/PageType.java
+//SOURCES util/HtmlArchive.java
+//SOURCES util/HtmlExtractor.java
+//SOURCES util/HttpFetcher.java
+//SOURCES util/Metrics.java
+//SOURCES util/LatencyHistogram.java
+//SOURCES util/NavigationTimings.java
+//SOURCES util/MonitoringOptions.java
+//SOURCES util/ScrapeContext.java
+//SOURCES util/ScrapeEvents.java
+//SOURCES util/ErrorCollector.java
+//SOURCES util/AsyncLogs.java
+//SOURCES util/ResilienceOptions.java
+//SOURCES util/SelectorRegistry.java
+//SOURCES util/TimeoutPolicy.java
+//SOURCES util/RetryQueue.java
+//SOURCES util/CircuitBreaker.java
+//SOURCES util/AccountPool.java
+//SOURCES util/RateBudget.java
+//SOURCES util/SessionKeeper.java
+//SOURCES util/PageRecycler.java
+//SOURCES util/SecondLvlDomains.java
 
 //SOURCES model/Lead.java
+//SOURCES model/LeadStore.java
 //SOURCES model/Company.java
 //SOURCES model/Contact.java
 
+//FILES log4j2.xml=../../../../resources/log4j2.xml
+//FILES log4j2.component.properties=../../../../resources/log4j2.component.properties
+
 //JAVAC_OPTIONS -encoding UTF8
 
 package io.qbilon.linkedin;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.net.MalformedURLException;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.jsoup.Jsoup;
+
 import com.microsoft.playwright.Browser;
 import com.microsoft.playwright.BrowserContext;
 import com.microsoft.playwright.Locator;
 import com.microsoft.playwright.Page;
 import com.microsoft.playwright.Playwright;
+import com.microsoft.playwright.PlaywrightException;
 
 import eu.easyrpa.openframework.excel.ExcelDocument;
 import eu.easyrpa.openframework.excel.Sheet;
@@ -45,16 +95,36 @@ import eu.easyrpa.openframework.excel.Table;
 import io.qbilon.linkedin.model.Company;
 import io.qbilon.linkedin.model.Contact;
 import io.qbilon.linkedin.model.Lead;
-import io.qbilon.linkedin.util.JobDescriptors;
-import io.qbilon.linkedin.util.RemovableNameSegments;
-import io.qbilon.linkedin.util.SpecialChars;
+import io.qbilon.linkedin.model.LeadStore;
+import io.qbilon.linkedin.util.AsyncLogs;
+import io.qbilon.linkedin.util.LeadRecordFile;
+import io.qbilon.linkedin.util.PageType;
+import io.qbilon.linkedin.util.RateBudget;
+import io.qbilon.linkedin.util.ResilienceOptions;
+import io.qbilon.linkedin.util.RetryQueue;
+import io.qbilon.linkedin.util.AccountPool;
+import io.qbilon.linkedin.util.CircuitBreaker;
+import io.qbilon.linkedin.util.ErrorCollector;
+import io.qbilon.linkedin.util.HtmlArchive;
+import io.qbilon.linkedin.util.HtmlExtractor;
+import io.qbilon.linkedin.util.HttpFetcher;
+import io.qbilon.linkedin.util.LeadNormalizer;
+import io.qbilon.linkedin.util.Metrics;
+import io.qbilon.linkedin.util.MonitoringOptions;
+import io.qbilon.linkedin.util.NavigationTimings;
+import io.qbilon.linkedin.util.ScrapeContext;
+import io.qbilon.linkedin.util.ScrapeEvents;
+import io.qbilon.linkedin.util.TtlCache;
 import io.qbilon.linkedin.util.Util;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 
 @Command(name = "scrapeLeads", mixinStandardHelpOptions = true, version = "scrapeLeads 1.0", description = "Scrapes potential Leads from LinkedIn for a given set of companies and search terms")
-public class LeadScraper implements Callable<Integer> {
+public class LeadScraper implements Callable<Integer>, DaemonJob {
+    private static final Logger LOG = LogManager.getLogger(LeadScraper.class);
+
     @Option(names = { "-e", "--email" }, description = "The email to be used for login in LinkedIn")
     private String email;
     @Option(names = { "-p", "--password" }, description = "The password to be used for login in LinkedIn")
@@ -78,20 +148,47 @@ public class LeadScraper implements Callable<Integer> {
     private int delay;
     @Option(names = { "--skip-augmented" }, description = "If toggled this lets the scraper skip the augmentation phase of lead scraping.")
     private boolean skipAugmented;
-    @Option(names = { "--skip-raw" }, description = "If toggled this lets the scraper skip the phase of raw lead scraping")
+    @Option(names = { "--skip-raw" }, description = "If toggled this lets the scraper skip the phase of raw lead scraping. The raw leads are read from leads.bin or leads.xlsx, whichever is newer")
     private boolean skipRaw;
+    @Option(names = { "--profile-cache-ttl" }, description = "The time in hours for which scraped job titles of a profile are reused instead of visiting the profile again. 0 disables the cache (default is 168, i.e., one week)", defaultValue = "168")
+    private int profileCacheTtl;
+    @Option(names = { "--archive" }, description = "An optional directory in which the html of all visited pages is archived for offline re-extraction. Use it like this: --archive path/to/archive")
+    private File archiveDir;
+    @Option(names = { "--http-pages" }, description = "Page types that are fetched without a browser. If the required markup is missing the browser is used instead. Supported is PROFILE. Use it like this: --http-pages PROFILE")
+    private List<PageType> httpPages = new ArrayList<>();
+    @Option(names = { "--augmentation" }, description = "How the job titles of a lead are scraped. PROFILE loads the full profile, EXPERIENCE_DETAILS only its lighter experience details page (default is PROFILE)", defaultValue = "PROFILE")
+    private Augmentation augmentation;
+    @Option(names = { "--prefetch" }, description = "If toggled the next profile is already loaded in a second tab while the current one is extracted. Ignored with --accounts and for profiles fetched via --http-pages")
+    private boolean prefetchProfiles;
+    @Option(names = { "--accounts" }, description = "An optional properties file with further accounts, one email=password per line. Companies and profiles are then distributed over one browser per account, while the account given by --email does the retries. Use it like this: --accounts path/to/accounts.properties")
+    private File accountsFile;
+    @Option(names = { "--account-budget" }, description = "The maximum number of page navigations per account and hour when --accounts is used, 0 means unlimited (default is 300)", defaultValue = "300")
+    private int accountBudget;
+    @Mixin
+    private MonitoringOptions monitoring;
+    @Mixin
+    private ResilienceOptions resilience;
 
 
     private Path currentDir = Paths.get("").toAbsolutePath();
     private Path pathToContext = currentDir.resolve("state.json").toAbsolutePath();
     private Path pathToLeadExcel = currentDir.resolve("leads.xlsx").toAbsolutePath();
+    private Path pathToLeadRecords = currentDir.resolve("leads.bin").toAbsolutePath();
     private Path pathToAugmentedLeadExcel = currentDir.resolve("augmentedleads.xlsx").toAbsolutePath();
-    private SpecialChars specialChars = new SpecialChars();
-    private RemovableNameSegments removableSegments = new RemovableNameSegments();
-    private JobDescriptors jobDescriptors = new JobDescriptors();
+    private Path pathToProfileCache = currentDir.resolve("profiles.cache").toAbsolutePath();
+    private LeadNormalizer normalizer = new LeadNormalizer();
     private Util util;
+    private Metrics metrics;
+    private NavigationTimings navigationTimings;
+    private TtlCache<List<String>> profileCache;
+    private ProfilePrefetch prefetch;
+    private HtmlArchive archive;
+    private HtmlExtractor extractor = new HtmlExtractor();
+    private HttpFetcher httpFetcher;
 
-    private List<String> errors = new ArrayList<>();
+    private ErrorCollector errors;
+    private CircuitBreaker breaker;
+    private AccountPool accounts;
 
     public static void main(String[] args) {
         int exitCode = new CommandLine(new LeadScraper()).execute(args);
@@ -103,6 +200,7 @@ public class LeadScraper implements Callable<Integer> {
         validateInput();
         init();
 
+        AsyncLogs.drain();
         System.out.println();
         System.out.println("Starting LinkedIn Lead Scraper in directory " + currentDir + " with:");
         System.out.println("\temail = " + email);
@@ -119,39 +217,80 @@ public class LeadScraper implements Callable<Integer> {
         System.out.println("\tskipAugmented = " + skipAugmented);
         System.out.println("\tskipRaw = " + skipRaw);
         System.out.println("\tdelay = " + delay);
+        System.out.println("\tprofileCacheTtl = " + profileCacheTtl);
+        if (archiveDir != null) {
+            System.out.println("\tarchive = " + archiveDir.getAbsolutePath());
+        }
+        System.out.println("\thttpPages = " + httpPages);
+        System.out.println("\taugmentation = " + augmentation);
+        System.out.println("\tprefetch = " + prefetchProfiles);
+        if (accountsFile != null) {
+            System.out.println("\taccounts = " + accountsFile.getAbsolutePath());
+            System.out.println("\taccountBudget = " + accountBudget);
+        }
+        System.out.println("\tmonitoring = " + monitoring.describe());
+        System.out.println("\tresilience = " + resilience.describe());
         System.out.println();
 
         try (Playwright playwright = Playwright.create()) {
             run(playwright);
+        } catch (ErrorCollector.FailFastException e) {
+            AsyncLogs.drain();
+            System.out.println(e.getMessage());
+            System.out.println(errors.report(verbose));
+            return 1;
         } catch (Exception e) {
+            AsyncLogs.drain();
             e.printStackTrace();
             System.out.println(
                     "Something went wrong. Sometimes this is due to a timing error. In this case just retry it. If the error persists, you could toggle verbose mode with '-v' in order to get more information");
             return 1;
+        } finally {
+            metrics.close();
         }
         return 0;
     }
 
     private void init() {
-        util = new Util(verbose, delay);
+        metrics = monitoring.createMetrics();
+        errors = monitoring.createErrorCollector();
+        if (verbose) {
+            Configurator.setRootLevel(Level.DEBUG);
+        }
+        util = new Util(verbose, delay, metrics);
+        navigationTimings = monitoring.createNavigationTimings(metrics);
+        util.setNavigationTimings(navigationTimings);
+        util.setTimeouts(resilience.createTimeoutPolicy(metrics));
+        util.setSession(resilience.createSessionKeeper(pathToContext, email, password, metrics));
+        util.setPageRecycler(resilience.createPageRecycler(metrics));
+        util.setWaitUntil(resilience.waitUntil());
+        breaker = resilience.createCircuitBreaker(metrics);
+        try {
+            util.setSelectors(resilience.createSelectorRegistry(metrics));
+        } catch (IOException e) {
+            System.out.println("Could not read the selectors file: " + e.getMessage());
+            System.exit(1);
+        }
+        if (accountsFile != null) {
+            try {
+                accounts = AccountPool.load(accountsFile.toPath(), currentDir, accountBudget, metrics);
+            } catch (IOException e) {
+                System.out.println("Could not read the accounts file: " + e.getMessage());
+                System.exit(1);
+            }
+            util.setRateBudget(new RateBudget(accountBudget, Math.max(1, accountBudget / 20), metrics));
+        }
+        profileCache = new TtlCache<>(pathToProfileCache, new JobTitlesCodec(), Duration.ofHours(profileCacheTtl));
+        if (archiveDir != null) {
+            archive = new HtmlArchive(archiveDir.toPath().toAbsolutePath(), metrics);
+        }
     }
 
     private void validateInput() {
         if(!skipRaw) {
-            if (companiesExcelFile == null || !companiesExcelFile.exists()) {
-                System.out.println("You need to provide a company excel file!");
-                System.exit(1);
-            }
-            if (duplicatesExcelFile == null || !duplicatesExcelFile.exists()) {
-                System.out.println("You need to provide an excel file containing existing lead emails!");
-                System.exit(1);
-            }
-            if (locations == null || locations.isEmpty()) {
-                System.out.println("You need to provide at least one location!");
-                System.exit(1);
-            }
-            if (searchTerms == null || searchTerms.isEmpty()) {
-                System.out.println("You need to provide at least one search term!");
+            String error = validationError();
+            if (error != null) {
+                System.out.println(error);
                 System.exit(1);
             }
         }
@@ -165,185 +304,711 @@ public class LeadScraper implements Callable<Integer> {
         }
     }
 
-    private void run(Playwright playwright) throws MalformedURLException {
+    @Override
+    public String validationError() {
+        if (companiesExcelFile == null || !companiesExcelFile.exists()) {
+            return "You need to provide a company excel file!";
+        }
+        if (duplicatesExcelFile == null || !duplicatesExcelFile.exists()) {
+            return "You need to provide an excel file containing existing lead emails!";
+        }
+        if (locations == null || locations.isEmpty()) {
+            return "You need to provide at least one location!";
+        }
+        if (searchTerms == null || searchTerms.isEmpty()) {
+            return "You need to provide at least one search term!";
+        }
+        return null;
+    }
+
+    @Override
+    public Set<String> ignoredOptions() {
+        return Set.of("--email", "--password", "--skip-raw", "--accounts", "--account-budget");
+    }
+
+    @Override
+    public Util createUtil(Metrics metrics) {
+        return new Util(verbose, delay, metrics);
+    }
+
+    /**
+     * Always does the raw lead search, the leads of earlier jobs are not
+     * picked up.
+     */
+    @Override
+    public Map<String, Object> runJob(BrowserContext context, Page page, Path outputDir, Util util,
+            ErrorCollector errors) throws IOException {
+        this.util = util;
+        this.metrics = util.getMetrics();
+        this.errors = errors;
+        breaker = resilience.createCircuitBreaker(metrics);
+        pathToLeadExcel = outputDir.resolve("leads.xlsx");
+        pathToLeadRecords = outputDir.resolve("leads.bin");
+        pathToAugmentedLeadExcel = outputDir.resolve("augmentedleads.xlsx");
+        profileCache = new TtlCache<>(pathToProfileCache, new JobTitlesCodec(), Duration.ofHours(profileCacheTtl));
+        if (archiveDir != null) {
+            archive = new HtmlArchive(archiveDir.toPath().toAbsolutePath(), metrics);
+        }
+        if (!httpPages.isEmpty()) {
+            httpFetcher = HttpFetcher.fromStorageState(context.storageState(), util.getRateBudget());
+            util.setHttpFetcher(httpFetcher);
+        }
+        LeadStore leads = scrapeLeads(page, readCompanies());
+        return Map.of("leads", leads.size(), "file",
+                (skipAugmented ? pathToLeadExcel : pathToAugmentedLeadExcel).toString());
+    }
+
+    private void run(Playwright playwright) throws IOException {
         Browser browser = util.createBrowser(playwright, pathToContext);
         BrowserContext context = browser.contexts().get(0);
-        Page page = util.loginToLinkedIn(context, email, password);
-        
-        List<Lead> leads = new ArrayList<>();
+        ScrapeContext.setPhase("login");
+        AtomicReference<Page> current = new AtomicReference<>(util.loginToLinkedIn(context, email, password));
+        if (!httpPages.isEmpty()) {
+            httpFetcher = HttpFetcher.fromStorageState(context.storageState(), util.getRateBudget());
+            util.setHttpFetcher(httpFetcher);
+        }
+
+        LeadStore leads = new LeadStore();
         if(!skipRaw) {
             // do the full scraping process
-            ExcelDocument companiesExcel = new ExcelDocument(companiesExcelFile.getAbsolutePath().toString());
-            Sheet companiesSheet = companiesExcel.getActiveSheet();
-            Table<Company> companiesTable = companiesSheet.getTable("A1", Company.class);
-    
-            ExcelDocument contactsExcel = new ExcelDocument(duplicatesExcelFile.getAbsolutePath().toString());
-            Sheet contactsSheet = contactsExcel.getActiveSheet();
-            Table<Contact> contactsTable = contactsSheet.getTable("A1", Contact.class);
-    
-            Set<String> existingContacts = contactsTable.getRecords().stream().map(contact -> contact.getEmail())
-                    .filter(Objects::nonNull).collect(Collectors.toSet());
-                    
-            leads = scrapeAndSaveRawDeduplicatedLeads(page, companiesTable, existingContacts);
+            ScrapeContext.setPhase("scrapeRawLeads");
+            leads = scrapeAndSaveRawDeduplicatedLeads(current, readCompanies(), readExistingContacts());
         } else {
             if(!skipAugmented) {
                 // assume there is already a raw list
-                System.out.println(util.progress() + "Starting from existing lead excel file at " + pathToLeadExcel.toString());
-                ExcelDocument leadExcel = new ExcelDocument(pathToLeadExcel.toString());
-                Sheet leadSheet = leadExcel.getActiveSheet();
-                Table<Lead> leadTable = leadSheet.getTable("A1", Lead.class);
-                leads = leadTable.getRecords();
+                ScrapeContext.setPhase("augmentAndSaveScrapedLeads");
+                // the excel file may have been reviewed and edited after the records were written
+                boolean fromRecords = pathToLeadRecords.toFile().exists() && (!pathToLeadExcel.toFile().exists()
+                        || pathToLeadRecords.toFile().lastModified() >= pathToLeadExcel.toFile().lastModified());
+                ScrapeEvents.ExcelIO readEvent = new ScrapeEvents.ExcelIO("read",
+                        fromRecords ? pathToLeadRecords.toString() : pathToLeadExcel.toString());
+                long readStart = System.nanoTime();
+                readEvent.begin();
+                try {
+                    if (fromRecords) {
+                        LOG.info("{}Starting from existing lead records at {}", util.progress(), pathToLeadRecords);
+                        LeadRecordFile.read(pathToLeadRecords, leads::put);
+                    } else {
+                        LOG.info("{}Starting from existing lead excel file at {}{}", util.progress(), pathToLeadExcel,
+                                pathToLeadRecords.toFile().exists() ? ", as it is newer than " + pathToLeadRecords : "");
+                        ExcelDocument leadExcel = new ExcelDocument(pathToLeadExcel.toString());
+                        Sheet leadSheet = leadExcel.getActiveSheet();
+                        Table<Lead> leadTable = leadSheet.getTable("A1", Lead.class);
+                        leads.putAll(leadTable.getRecords());
+                    }
+                    readEvent.finish(ScrapeEvents.OK);
+                } catch (IOException | RuntimeException e) {
+                    readEvent.finish(e);
+                    throw e;
+                } finally {
+                    metrics.recordSince("excel_io", readStart, "operation", "read");
+                }
             }
         }
 
         if (!skipAugmented) {
+            AsyncLogs.drain();
             System.out.println();
-            System.out.println(util.progress() + "Starting augmentation of found leads!");
-            augmentAndSaveScrapedLeads(page, leads);
+            LOG.info("{}Starting augmentation of found leads!", util.progress());
+            ScrapeContext.setPhase("augmentAndSaveScrapedLeads");
+            augmentAndSaveScrapedLeads(current, leads);
         }
 
         // Save current browser state
+        ScrapeContext.setPhase("export");
         context.storageState(new BrowserContext.StorageStateOptions().setPath(pathToContext));
         context.close();
         browser.close();
 
+        AsyncLogs.drain();
         System.out.println();
         System.out.println(" +++++ FINISHED SCRAPING :) +++++");
-        if (errors.size() > 0) {
-            System.out.println("\nERRORS:");
-            for (String error : errors) {
-                System.out.println("\t" + error);
-            }
+        if (!skipAugmented && profileCacheTtl > 0) {
+            System.out.println("\nProfile cache: " + profileCache.stats());
+        }
+        if (httpFetcher != null) {
+            System.out.println("\nHTTP engine: " + httpFetcher.stats());
+        }
+        if (accounts != null) {
+            System.out.println("\nAccounts:");
+            System.out.println(accounts.report());
+        }
+        if (!errors.isEmpty()) {
+            System.out.println();
+            System.out.println(errors.report(verbose));
+        }
+        System.out.println("\nMetrics:");
+        System.out.println(metrics.summary());
+        System.out.println("\nLatencies [ms]:");
+        System.out.println(metrics.latencyTable());
+        System.out.println("Adaptive timeouts:");
+        System.out.println(util.getTimeouts().report());
+        if (navigationTimings != null) {
+            System.out.println("\nNavigation timings (average per page) [ms]:");
+            System.out.println(navigationTimings.report());
         }
         System.out.println("\nPlease review the scraped leads! They might still contain compromised data or unfitting leads");
     }
 
-    private void augmentAndSaveScrapedLeads(Page page, List<Lead> leads) {
-        System.out.println(util.progress() + "Augmenting scraped leads with additional job information.");
+    /**
+     * Prepares the scraper for the {@link ProspectScraper}, which shares its
+     * browser session and bookkeeping with the company discovery.
+     */
+    void initForPipeline(List<String> locations, Map<String, Integer> searchTerms, File duplicatesExcelFile,
+            boolean skipAugmented, int profileCacheTtl, boolean verbose, ResilienceOptions resilience, Util util,
+            Metrics metrics, ErrorCollector errors, CircuitBreaker breaker) {
+        this.locations = locations;
+        this.searchTerms = searchTerms;
+        this.duplicatesExcelFile = duplicatesExcelFile;
+        this.skipAugmented = skipAugmented;
+        this.profileCacheTtl = profileCacheTtl;
+        this.verbose = verbose;
+        this.resilience = resilience;
+        this.util = util;
+        this.metrics = metrics;
+        this.errors = errors;
+        this.breaker = breaker;
+        profileCache = new TtlCache<>(pathToProfileCache, new JobTitlesCodec(), Duration.ofHours(profileCacheTtl));
+    }
+
+    /**
+     * Searches the leads of the given companies and augments them afterwards,
+     * unless the augmentation is skipped. The companies may still be growing
+     * while they are iterated.
+     */
+    LeadStore scrapeLeads(Page page, Collection<Company> companies) throws IOException {
+        AtomicReference<Page> current = new AtomicReference<>(page);
+        ScrapeContext.setPhase("scrapeRawLeads");
+        LeadStore leads = scrapeAndSaveRawDeduplicatedLeads(current, companies, readExistingContacts());
+        if (!skipAugmented) {
+            ScrapeContext.setPhase("augmentAndSaveScrapedLeads");
+            augmentAndSaveScrapedLeads(current, leads);
+        }
+        return leads;
+    }
+
+    private List<Company> readCompanies() {
+        ScrapeEvents.ExcelIO excelEvent = new ScrapeEvents.ExcelIO("read", companiesExcelFile.getAbsolutePath());
+        long excelStart = System.nanoTime();
+        excelEvent.begin();
+        try {
+            ExcelDocument companiesExcel = new ExcelDocument(companiesExcelFile.getAbsolutePath().toString());
+            Sheet companiesSheet = companiesExcel.getActiveSheet();
+            Table<Company> companiesTable = companiesSheet.getTable("A1", Company.class);
+            excelEvent.finish(ScrapeEvents.OK);
+            return companiesTable.getRecords();
+        } catch (RuntimeException e) {
+            excelEvent.finish(e);
+            throw e;
+        } finally {
+            metrics.recordSince("excel_io", excelStart, "operation", "read");
+        }
+    }
+
+    private Set<String> readExistingContacts() {
+        ScrapeEvents.ExcelIO excelEvent = new ScrapeEvents.ExcelIO("read", duplicatesExcelFile.getAbsolutePath());
+        long excelStart = System.nanoTime();
+        excelEvent.begin();
+        try {
+            ExcelDocument contactsExcel = new ExcelDocument(duplicatesExcelFile.getAbsolutePath().toString());
+            Sheet contactsSheet = contactsExcel.getActiveSheet();
+            Table<Contact> contactsTable = contactsSheet.getTable("A1", Contact.class);
+            Set<String> existingContacts = contactsTable.getRecords().stream().map(contact -> contact.getEmail())
+                    .filter(Objects::nonNull).collect(Collectors.toSet());
+            excelEvent.finish(ScrapeEvents.OK);
+            return existingContacts;
+        } catch (RuntimeException e) {
+            excelEvent.finish(e);
+            throw e;
+        } finally {
+            metrics.recordSince("excel_io", excelStart, "operation", "read");
+        }
+    }
+
+    // the page may be replaced by the page recycler, so it is passed by reference
+    private void augmentAndSaveScrapedLeads(AtomicReference<Page> page, LeadStore leads) throws IOException {
+        LOG.info("{}Augmenting scraped leads with additional job information.", util.progress());
         util.touchFile(pathToAugmentedLeadExcel);
+        if (profileCacheTtl > 0) {
+            profileCache.load();
+        }
         ExcelDocument doc = new ExcelDocument();
-        int count = 1;
-        for (Lead lead : leads) {
+        RetryQueue<Integer> retries = resilience.createRetryQueue(metrics, errors);
+        if (accounts != null) {
+            List<Integer> indices = new ArrayList<>();
+            for (int index = 0; index < leads.size(); index++) {
+                indices.add(index);
+            }
+            AtomicInteger augmented = new AtomicInteger();
+            runOnAccounts("augmentAndSaveScrapedLeads", indices, (worker, workerPage, index) -> {
+                worker.augmentOrDefer(workerPage, leads, index, retries);
+                if (profileCacheTtl > 0 && augmented.incrementAndGet() % 100 == 0) {
+                    // don't lose everything if the run crashes
+                    profileCache.save();
+                }
+            });
+        } else {
+            if (prefetchProfiles && (httpFetcher == null || !httpPages.contains(PageType.PROFILE))) {
+                prefetch = new ProfilePrefetch(page.get());
+            }
+            for (int index = 0; index < leads.size(); index++) {
+                if (!breaker.awaitClosed()) {
+                    break;
+                }
+                if (prefetch != null) {
+                    prefetch.next = nextUncachedProfile(leads, index + 1);
+                }
+                augmentOrDefer(prefetch != null ? prefetch.current() : page.updateAndGet(util::recycle), leads, index,
+                        retries);
+                if (profileCacheTtl > 0 && (index + 1) % 100 == 0) {
+                    // don't lose everything if the run crashes
+                    profileCache.save();
+                }
+            }
+            if (prefetch != null) {
+                page.set(prefetch.close());
+                prefetch = null;
+            }
+        }
+        retries.processAll(index -> augmentLead(page.updateAndGet(util::recycle), leads, index), breaker);
+        LOG.info("Retries: {}", retries.stats());
+        if (profileCacheTtl > 0) {
+            profileCache.save();
+        }
 
-            try {
-                System.out.println(util.progress(count, leads.size()) + "Augmenting " + lead.getEmail());
-                page.navigate(lead.getProfileLink());
-                page.waitForSelector("section:has(> #experience)");
+        ScrapeContext.setPhase("export");
+        ScrapeEvents.ExcelIO excelEvent = new ScrapeEvents.ExcelIO("write", pathToAugmentedLeadExcel.toString());
+        long excelStart = System.nanoTime();
+        excelEvent.begin();
+        try {
+            doc.getActiveSheet().insertTable("A1", leads.asList());
+            doc.saveAs(pathToAugmentedLeadExcel.toString());
+            doc.close();
+            excelEvent.finish(ScrapeEvents.OK);
+        } catch (RuntimeException e) {
+            excelEvent.finish(e);
+            throw e;
+        } finally {
+            metrics.recordSince("excel_io", excelStart, "operation", "write");
+        }
+    }
+
+    private void augmentOrDefer(Page page, LeadStore leads, int index, RetryQueue<Integer> retries) {
+        Lead lead;
+        synchronized (leads) {
+            lead = leads.get(index);
+        }
+        try {
+            LOG.info("{}Augmenting {}", util.progress(index + 1, leads.size()), lead.getEmail());
+            augmentLead(page, leads, index);
+            breaker.succeeded();
+        } catch (Exception e) {
+            errors.error("Failed to augment lead " + lead.getEmail() + " (" + lead.getProfileLink()
+                    + ")! Retrying it later.", e);
+            breaker.failed();
+            retries.defer(index, e);
+        }
+    }
+
+    private void augmentLead(Page page, LeadStore leads, int index) {
+        Lead lead;
+        synchronized (leads) {
+            lead = leads.get(index);
+        }
+        String cacheKey = normalizeProfileLink(lead.getProfileLink());
+        List<String> jobDescriptions = profileCacheTtl > 0 ? profileCache.get(cacheKey) : null;
+        if (profileCacheTtl > 0) {
+            metrics.increment(jobDescriptions != null ? "cache_hits" : "cache_misses", "cache", "profile");
+        }
+        if (jobDescriptions == null) {
+            jobDescriptions = scrapeJobDescriptions(page, lead.getProfileLink());
+            if (profileCacheTtl > 0) {
+                profileCache.put(cacheKey, jobDescriptions);
+            }
+        }
+        normalizer.applyJobDescriptions(lead, jobDescriptions);
+        synchronized (leads) {
+            leads.set(index, lead);
+        }
+        errors.succeeded();
+    }
+
+    private List<String> scrapeJobDescriptions(Page page, String profileLink) {
+        if (httpFetcher != null && httpPages.contains(PageType.PROFILE)) {
+            List<String> jobDescriptions = scrapeJobDescriptionsViaHttp(profileLink);
+            if (jobDescriptions != null) {
                 util.doWait();
+                return jobDescriptions;
+            }
+            httpFetcher.markFallback();
+        }
+        PageType type = augmentation.pageType;
+        String url = augmentation.url(profileLink);
+        if (prefetch != null) {
+            page = prefetch.open(page, url);
+            util.waitUntilReady(page, type);
+            // the delay still separates the ready page from the next navigation, which then loads during the extraction
+            util.doWait();
+            prefetch.start(url);
+        } else {
+            util.navigate(page, url, type);
+            util.waitUntilReady(page, type);
+            util.doWait();
+        }
+        if (archive != null) {
+            archive.archive(type, page.url(), page.content(), HtmlArchive.context("profileLink", profileLink));
+        }
+        ScrapeEvents.Extract extractEvent = new ScrapeEvents.Extract(type);
+        long extractStart = System.nanoTime();
+        extractEvent.begin();
+        try {
+            Locator stations;
+            if (type == PageType.EXPERIENCE) {
+                stations = page.locator(util.selector(type)).locator(".scaffold-finite-scroll__content > ul.pvs-list > li");
+            } else {
                 // select the parent of the experience div
-                Locator experienceSection = page.locator("section:has(> #experience)");
-                Locator stations = experienceSection.locator("> div.pvs-list__outer-container > ul.pvs-list > li");
+                Locator experienceSection = page.locator(util.selector(type));
+                stations = experienceSection.locator("> div.pvs-list__outer-container > ul.pvs-list > li");
+            }
 
-                List<String> jobDescriptions = new ArrayList<>();
-                int maxNumJobs = 4;
-                jobs: for (Locator station : stations.all()) {
-                    if (jobDescriptions.size() >= maxNumJobs) {
-                        break;
-                    }
-                    Locator subDivs = station.locator("> div > div:nth-child(2) > div");
-                    if(subDivs.count() == 1) {
-                        // normal station
-                        Locator jobTitle = station.locator("> div > div > div > div > div > span > span[aria-hidden]");
-                        util.debug(jobTitle);
-                        jobDescriptions.add(jobTitle.textContent().trim());
-                    } else {
-                        // fetch the second div that contains all subStations
-                        Locator subStations = subDivs.all().get(1);
-                        // station with substations
-                        Locator jobTitles = subStations.locator("> ul.pvs-list > li > div > div > div > a > div > span > span[aria-hidden]");
-                        util.debug(jobTitles);
-                        for (Locator jobTitle : jobTitles.all()) {
-                            if (jobDescriptions.size() >= maxNumJobs) {
-                                break jobs;
-                            }
-                            jobDescriptions.add(jobTitle.textContent().trim());
+            List<String> jobDescriptions = new ArrayList<>();
+            int maxNumJobs = 4;
+            jobs: for (Locator station : stations.all()) {
+                if (jobDescriptions.size() >= maxNumJobs) {
+                    break;
+                }
+                Locator subDivs = station.locator("> div > div:nth-child(2) > div");
+                if(subDivs.count() == 1) {
+                    // normal station
+                    Locator jobTitle = station.locator("> div > div > div > div > div > span > span[aria-hidden]");
+                    util.debug(jobTitle);
+                    jobDescriptions.add(jobTitle.textContent().trim());
+                } else {
+                    // fetch the second div that contains all subStations
+                    Locator subStations = subDivs.all().get(1);
+                    // station with substations
+                    Locator jobTitles = subStations.locator("> ul.pvs-list > li > div > div > div > a > div > span > span[aria-hidden]");
+                    util.debug(jobTitles);
+                    for (Locator jobTitle : jobTitles.all()) {
+                        if (jobDescriptions.size() >= maxNumJobs) {
+                            break jobs;
                         }
+                        jobDescriptions.add(jobTitle.textContent().trim());
                     }
                 }
+            }
+            extractEvent.setItems(jobDescriptions.size());
+            extractEvent.finish(ScrapeEvents.OK);
+            return jobDescriptions;
+        } catch (RuntimeException e) {
+            extractEvent.finish(e);
+            throw e;
+        } finally {
+            metrics.recordLatency(type, "extract", extractStart);
+        }
+    }
+
+    private List<String> scrapeJobDescriptionsViaHttp(String profileLink) {
+        try {
+            long fetchStart = System.nanoTime();
+            String html = httpFetcher.fetch(profileLink);
+            metrics.recordSince("http_fetch", fetchStart, "type", PageType.PROFILE.name());
+            if (html == null) {
+                return null;
+            }
+            List<String> jobDescriptions = extractor.extractJobTitles(Jsoup.parse(html, profileLink), 4);
+            if (jobDescriptions == null || jobDescriptions.isEmpty()) {
+                // most likely rendered on the client side
+                return null;
+            }
+            if (archive != null) {
+                archive.archive(PageType.PROFILE, profileLink, html, HtmlArchive.context("profileLink", profileLink));
+            }
+            return jobDescriptions;
+        } catch (Exception e) {
+            // the browser gets another chance
+            return null;
+        }
+    }
+
+    private String nextUncachedProfile(LeadStore leads, int index) {
+        if (index >= leads.size()) {
+            return null;
+        }
+        String profileLink;
+        synchronized (leads) {
+            profileLink = leads.get(index).getProfileLink();
+        }
+        if (profileCacheTtl > 0 && profileCache.contains(normalizeProfileLink(profileLink))) {
+            return null;
+        }
+        return augmentation.url(profileLink);
+    }
+
+    // e.g. https://de.linkedin.com/in/max-mustermann-123/?foo=bar -> /in/max-mustermann-123
+    private String normalizeProfileLink(String profileLink) {
+        String link = profileLink.trim().toLowerCase();
+        if (link.contains("?")) {
+            link = link.substring(0, link.indexOf("?"));
+        }
+        if (link.contains("#")) {
+            link = link.substring(0, link.indexOf("#"));
+        }
+        if (link.contains("/in/")) {
+            link = link.substring(link.indexOf("/in/"));
+        }
+        while (link.endsWith("/")) {
+            link = link.substring(0, link.length() - 1);
+        }
+        return link;
+    }
+
+    // the page may be replaced by the page recycler, so it is passed by reference
+    private LeadStore scrapeAndSaveRawDeduplicatedLeads(AtomicReference<Page> page, Collection<Company> companies,
+            Set<String> existingContacts) throws IOException {
+        LeadStore allDeduplicatedLeads = new LeadStore();
+        // leads are appended as they are found, so the augmentation phase can pick them up with --skip-raw
+        LeadRecordFile.Writer records = LeadRecordFile.create(pathToLeadRecords);
+        // Search all Companies for all searchterms
+        RetryQueue<SearchUnit> retries = resilience.createRetryQueue(metrics, errors);
+        if (accounts != null) {
+            runOnAccounts("scrapeRawLeads", companies, (worker, workerPage, company) -> worker.scrapeCompanyOrDefer(
+                    workerPage, company, existingContacts, allDeduplicatedLeads, records, retries));
+        } else {
+            int counter = 1;
+            for (Company company : companies) {
+                AsyncLogs.drain();
+                System.out.println();
+                util.progress(counter, companies.size());
+                if (!breaker.awaitClosed()) {
+                    break;
+                }
+                scrapeCompanyOrDefer(page.updateAndGet(util::recycle), company, existingContacts, allDeduplicatedLeads, records,
+                        retries);
+                LOG.info("{}Currently found {} potential, deduplicated leads in total",
+                        util.progress(counter, companies.size()), allDeduplicatedLeads.size());
+                counter++;
+            }
+        }
 
-                if (jobDescriptions.size() >= 1) {
-                    if (!lead.getJobTitle().equals(jobDescriptions.get(0))) {
-                        lead.setJobTitle(jobDescriptions.get(0));
-                    }
+        retries.processAll(unit -> {
+            ScrapeContext.setCompany(unit.company.getName());
+            Page current = page.updateAndGet(util::recycle);
+            if (unit.searchTerm == null) {
+                scrapeCompany(current, unit.company, existingContacts, allDeduplicatedLeads, records, retries);
+            } else {
+                // the other pages of the search term may have reached its limit meanwhile
+                Integer remaining = unit.remainingLeads();
+                if (remaining == 0) {
+                    LOG.info("{}Skipping the retry of {}, its search term already has {} leads", util.progress(), unit,
+                            unit.maxNrLeads);
+                    return;
                 }
-                if (jobDescriptions.size() >= 2) {
-                    lead.setPreviousJobTitle1(jobDescriptions.get(1));
+                LeadStore deduplicatedLeads = new LeadStore();
+                scrapeSearchPage(current, unit, deduplicatedLeads, existingContacts, remaining);
+                unit.termLeads.putAll(deduplicatedLeads);
+                saveLeads(deduplicatedLeads, allDeduplicatedLeads, records);
+            }
+        }, breaker);
+        ScrapeContext.clearTarget();
+        LOG.info("Retries: {}", retries.stats());
+
+        records.close();
+        LOG.info("Finished raw lead generation");
+        LOG.info("{}Saved raw leads at {}", util.progress(), pathToLeadRecords);
+        if (skipAugmented) {
+            // the raw leads are the final result, so export them for review
+            ScrapeContext.setPhase("export");
+            ScrapeEvents.ExcelIO excelEvent = new ScrapeEvents.ExcelIO("write", pathToLeadExcel.toString());
+            long excelStart = System.nanoTime();
+            excelEvent.begin();
+            try {
+                util.touchFile(pathToLeadExcel);
+                ExcelDocument doc = new ExcelDocument();
+                doc.getActiveSheet().insertTable("A1", allDeduplicatedLeads.asList());
+                doc.saveAs(pathToLeadExcel.toString());
+                doc.close();
+                excelEvent.finish(ScrapeEvents.OK);
+            } catch (RuntimeException e) {
+                excelEvent.finish(e);
+                throw e;
+            } finally {
+                metrics.recordSince("excel_io", excelStart, "operation", "write");
+            }
+            LOG.info("{}Exported raw leads to {}", util.progress(), pathToLeadExcel);
+        }
+        return allDeduplicatedLeads;
+    }
+
+    private void scrapeCompanyOrDefer(Page page, Company company, Set<String> existingContacts,
+            LeadStore allDeduplicatedLeads, LeadRecordFile.Writer records, RetryQueue<SearchUnit> retries) {
+        ScrapeContext.setCompany(company.getName());
+        try {
+            scrapeCompany(page, company, existingContacts, allDeduplicatedLeads, records, retries);
+        } catch (Exception e) {
+            errors.error("Failed to scrape leads for '" + company.getName() + "'! Retrying it later.", e);
+            breaker.failed();
+            retries.defer(new SearchUnit(company, null, null, 0, null, null), e);
+        }
+    }
+
+    /**
+     * Scrapes all search terms of the company. Search pages that fail are
+     * deferred to the retry queue and the next page is tried.
+     */
+    private void scrapeCompany(Page page, Company company, Set<String> existingContacts, LeadStore allDeduplicatedLeads,
+            LeadRecordFile.Writer records, RetryQueue<SearchUnit> retries) throws IOException {
+        navigateToInitialSearchPage(page, company, searchTerms.entrySet().iterator().next().getKey());
+        Map<String, List<String>> urlParams = util.urlParams(new URL(page.url()));
+        for (Entry<String, Integer> entry : searchTerms.entrySet()) {
+            LeadStore deduplicatedLeads = new LeadStore();
+            Integer maxNrLeads = entry.getValue();
+            String searchTerm = entry.getKey();
+            for (int currentPage = 1; maxNrLeads == -1 || maxNrLeads > deduplicatedLeads.size(); currentPage++) {
+                if (!breaker.awaitClosed()) {
+                    break;
                 }
-                if (jobDescriptions.size() >= 3) {
-                    lead.setPreviousJobTitle2(jobDescriptions.get(2));
+                SearchUnit unit = new SearchUnit(company, urlParams, searchTerm, currentPage, maxNrLeads,
+                        deduplicatedLeads);
+                try {
+                    if (!scrapeSearchPage(page, unit, deduplicatedLeads, existingContacts, maxNrLeads)) {
+                        break;
+                    }
+                    breaker.succeeded();
+                } catch (Exception e) {
+                    errors.error("Failed to scrape leads for '" + company.getName() + "' and search term '"
+                            + searchTerm + "' on page " + currentPage + "! Retrying it later.", e);
+                    breaker.failed();
+                    retries.defer(unit, e);
                 }
-                if (jobDescriptions.size() >= 4) {
-                    lead.setPreviousJobTitle3(jobDescriptions.get(3));
+                if (currentPage + 1 >= maxNrLeads) {
+                    break;
                 }
-            } catch (Exception e) {
-                errors.add("Failed to augment lead " + lead.getEmail() + " (" + lead.getProfileLink() + ")! Skip it.");
-                errors.add(util.stackTraceToString(e));
             }
-            count++;
+            saveLeads(deduplicatedLeads, allDeduplicatedLeads, records);
         }
+    }
 
-        doc.getActiveSheet().insertTable("A1", leads);
-        doc.saveAs(pathToAugmentedLeadExcel.toString());
-        doc.close();
+    /**
+     * Returns false if the search page has no results, i.e. we are past the
+     * last page.
+     */
+    private boolean scrapeSearchPage(Page page, SearchUnit unit, LeadStore leads, Set<String> existingContacts,
+            Integer maxNrLeads) {
+        ScrapeContext.setSearch(unit.searchTerm, unit.page);
+        util.navigate(page, createLeadSearchUrl(unit.urlParams, unit.searchTerm, unit.page), PageType.SEARCH);
+        util.doWait();
+        if (util.isEmptySearchPage(page, " for '" + unit.company.getName() + "' and searchTerm '" + unit.searchTerm + "'")) {
+            return false;
+        }
+        LOG.info("{}Scraping raw lead data for '{}' and search term '{}' on page {}", util.progress(),
+                unit.company.getName(), unit.searchTerm, unit.page);
+        scrapeRawLeads(page, unit.company, leads, existingContacts, maxNrLeads);
+        return true;
     }
 
-    private List<Lead> scrapeAndSaveRawDeduplicatedLeads(Page page, Table<Company> companyTable,
-            Set<String> existingContacts) {
-        Map<String, Lead> allDeduplicatedLeads = new HashMap<>();
-        util.touchFile(pathToLeadExcel);
-        ExcelDocument doc = new ExcelDocument();
-        // Search all Companies for all searchterms
-        int counter = 1;
-        int total = companyTable.getRecords().size();
-        for (Company company : companyTable) {
-            try {
-                System.out.println();
-                navigateToInitialSearchPage(page, company, searchTerms.entrySet().iterator().next().getKey());
-                Map<String, List<String>> urlParams = null;
-                urlParams = util.urlParams(new URL(page.url()));
-                for (Entry<String, Integer> entry : searchTerms.entrySet()) {
-                    Map<String, Lead> deduplicatedLeads = new HashMap<>();
-                    Integer currentPage = 1;
-                    Integer maxNrLeads = entry.getValue();
-                    String searchTerm = entry.getKey();
-                    page.navigate(createLeadSearchUrl(urlParams, searchTerm, currentPage));
-                    util.doWait();
-                    while (!util.isEmptySearchPage(page, " for '" + company.getName() + "' and searchTerm '" + searchTerm + "'")
-                            && (maxNrLeads == -1 || maxNrLeads > deduplicatedLeads.size())) {
+    private void saveLeads(LeadStore leads, LeadStore allDeduplicatedLeads, LeadRecordFile.Writer records)
+            throws IOException {
+        // shared by the workers of all accounts
+        synchronized (allDeduplicatedLeads) {
+            allDeduplicatedLeads.putAll(leads);
+            for (Lead lead : leads) {
+                records.append(lead);
+            }
+            records.flush();
+        }
+    }
+
+    private interface AccountWork<T> {
+        void run(LeadScraper worker, Page page, T unit) throws IOException;
+    }
+
+    /**
+     * Distributes the units over one browser per account. An account that runs
+     * into a checkpoint is quarantined and its current unit is taken over by
+     * the other accounts.
+     */
+    private <T> void runOnAccounts(String phase, Collection<T> units, AccountWork<T> work) {
+        BlockingQueue<T> queue = new LinkedBlockingQueue<>(units);
+        AtomicReference<RuntimeException> abort = new AtomicReference<>();
+        ExecutorService workers = Executors.newFixedThreadPool(accounts.accounts().size());
+        for (AccountPool.Account account : accounts.accounts()) {
+            workers.submit(() -> {
+                ScrapeContext.setPhase("login");
+                // Playwright is not thread safe, so every account needs its own instance
+                try (Playwright playwright = Playwright.create()) {
+                    Util accountUtil = util.forAccount(account.getBudget());
+                    accountUtil.setSession(resilience.createSessionKeeper(account.getStateFile(), account.getEmail(),
+                            account.getPassword(), metrics));
+                    Browser browser = accountUtil.createBrowser(playwright, account.getStateFile());
+                    BrowserContext context = browser.contexts().get(0);
+                    Page page = accountUtil.loginToLinkedIn(context, account.getEmail(), account.getPassword());
+                    LeadScraper worker = worker(accountUtil);
+                    if (httpFetcher != null) {
+                        // with the cookies and within the budget of this account
+                        worker.httpFetcher = httpFetcher.forSession(context.storageState(), account.getBudget());
+                        accountUtil.setHttpFetcher(worker.httpFetcher);
+                    }
+                    ScrapeContext.setPhase(phase);
+                    T unit;
+                    while (abort.get() == null && !account.isQuarantined() && breaker.awaitClosed()
+                            && (unit = queue.poll()) != null) {
                         try {
-                            System.out.println(util.progress(counter, total) + "Scraping raw lead data for '" + company.getName()
-                                    + "' and search term '" + searchTerm + "' on page " + currentPage);
-                            scrapeRawLeads(page, company, deduplicatedLeads, existingContacts, maxNrLeads);
-                            currentPage++;
-                            if (currentPage >= maxNrLeads) {
-                                break;
-                            }
-                            page.navigate(createLeadSearchUrl(urlParams, searchTerm, currentPage));
-                            util.doWait();
-                        } catch (Exception e) {
-                            errors.add("Failed to scrape leads for '" + company.getName() + "' and search term '"
-                                    + searchTerm + "' on page " + currentPage + "!. Skip it!");
-                            // errors.add(util.stackTraceToString(e));
+                            page = accountUtil.recycle(page);
+                            work.run(worker, page, unit);
+                            account.unitDone();
+                        } catch (Util.CheckpointException e) {
+                            queue.add(unit);
+                            accounts.quarantine(account, e.getMessage());
                         }
                     }
-                    allDeduplicatedLeads.putAll(deduplicatedLeads);
+                    context.storageState(new BrowserContext.StorageStateOptions().setPath(account.getStateFile()));
+                    browser.close();
+                } catch (Util.CheckpointException e) {
+                    accounts.quarantine(account, e.getMessage());
+                } catch (ErrorCollector.FailFastException e) {
+                    abort.compareAndSet(null, e);
+                } catch (Exception e) {
+                    try {
+                        errors.error("ERROR: The worker of account " + account.getEmail()
+                                + " failed! Its remaining units are scraped by the other accounts.", e);
+                    } catch (ErrorCollector.FailFastException failFast) {
+                        abort.compareAndSet(null, failFast);
+                    }
                 }
-            } catch (Exception e) {
-                errors.add("Failed to scrape leads for '" + company.getName() + "!. Skip it!");
-                // errors.add(util.stackTraceToString(e));
-            }
-            System.out.println(util.progress(counter, total) + "Currently found " + allDeduplicatedLeads.size() + " potential, deduplicated leads in total");
-            counter++;
+            });
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (abort.get() != null) {
+            throw abort.get();
         }
+        if (!queue.isEmpty()) {
+            errors.warning("WARNING: " + queue.size() + " units were not scraped, as all accounts are quarantined or the run was interrupted");
+        }
+    }
 
-        List<Lead> leads = new ArrayList<>();
-        leads.addAll(allDeduplicatedLeads.values());
-        doc.getActiveSheet().insertTable("A1", leads);
-        doc.saveAs(pathToLeadExcel.toString());
-        doc.close();
-        System.out.println("Finished raw lead generation");
-        System.out.println(util.progress() + "Saved raw leads at " + pathToLeadExcel.toAbsolutePath());
-        return leads;
+    // shares everything but the util and the http fetcher, i.e. the page, session and budget of an account
+    private LeadScraper worker(Util accountUtil) {
+        LeadScraper worker = new LeadScraper();
+        worker.locations = locations;
+        worker.searchTerms = searchTerms;
+        worker.verbose = verbose;
+        worker.profileCacheTtl = profileCacheTtl;
+        worker.httpPages = httpPages;
+        worker.augmentation = augmentation;
+        worker.resilience = resilience;
+        worker.util = accountUtil;
+        worker.metrics = metrics;
+        worker.errors = errors;
+        worker.breaker = breaker;
+        worker.profileCache = profileCache;
+        worker.archive = archive;
+        return worker;
     }
 
     private String createLeadSearchUrl(Map<String, List<String>> urlParams, String searchTerm, int currentPage) {
@@ -360,144 +1025,236 @@ public class LeadScraper implements Callable<Integer> {
         return result;
     }
 
-    private void scrapeRawLeads(Page page, Company company, Map<String, Lead> leads, Set<String> existingContacts,
+    private void scrapeRawLeads(Page page, Company company, LeadStore leads, Set<String> existingContacts,
             Integer maxNrLeads) {
-        page.waitForSelector(".search-results-container");
-        Locator resultContainer = page.locator(".search-results-container");
-        Locator resultItems = resultContainer.locator("li.reusable-search__result-container");
-        for (Locator resultItem : resultItems.all()) {
-            if (maxNrLeads == -1 || maxNrLeads > leads.size()) {
-                try {
-                    Locator titleLink = resultItem.locator("span.entity-result__title-text > a");
-                    Locator nameSpan = titleLink.locator("span[aria-hidden]");
-                    Locator jobSpan = resultItem.locator(".entity-result__primary-subtitle");
-
-                    Lead lead = new Lead();
-                    String link = titleLink.getAttribute("href");
-                    lead.setProfileLink(link.substring(0, link.indexOf("?")));
-                    setFirstAndLastName(lead, nameSpan.textContent().trim());
-                    lead.setJobTitle(getJobTitle(company, jobSpan.textContent().trim()));
-                    lead.setEmail(getEmail(lead, company.getDomain()));
-                    lead.setIndustry(company.getIndustry());
-
-                    if (!existingContacts.contains(lead.getEmail())) {
-                        leads.put(lead.getEmail(), lead);
+        util.waitUntilReady(page, PageType.SEARCH);
+        if (archive != null) {
+            archive.archive(PageType.SEARCH, page.url(), page.content(), HtmlArchive.context(
+                    "company", company.getName(),
+                    "companyLink", company.getLink(),
+                    "domain", company.getDomain(),
+                    "industry", company.getIndustry()));
+        }
+        ScrapeEvents.Extract extractEvent = new ScrapeEvents.Extract(PageType.SEARCH);
+        long extractStart = System.nanoTime();
+        extractEvent.begin();
+        try {
+            Locator resultContainer = page.locator(util.selector(PageType.SEARCH));
+            Locator resultItems = resultContainer.locator("li.reusable-search__result-container");
+            int items = 0;
+            for (Locator resultItem : resultItems.all()) {
+                if (maxNrLeads == -1 || maxNrLeads > leads.size()) {
+                    try {
+                        Locator titleLink = resultItem.locator("span.entity-result__title-text > a");
+                        Locator nameSpan = titleLink.locator("span[aria-hidden]");
+                        Locator jobSpan = resultItem.locator(".entity-result__primary-subtitle");
+
+                        Lead lead = normalizer.toLead(company, titleLink.getAttribute("href"),
+                                nameSpan.textContent(), jobSpan.textContent());
+
+                        if (existingContacts.contains(lead.getEmail())) {
+                            metrics.increment("dedup_drops", "type", "lead", "reason", "existing_contact");
+                        } else {
+                            if (leads.containsEmail(lead.getEmail())) {
+                                metrics.increment("dedup_drops", "type", "lead", "reason", "duplicate");
+                            }
+                            leads.put(lead);
+                        }
+                        items++;
+                        errors.succeeded();
+                    } catch (Exception e) {
+                        errors.error("Failed to scrape single lead data! Skip it.", e);
                     }
-                } catch (Exception e) {
-                    errors.add("Failed to scrape single lead data! Skip it.");
-                    errors.add(util.stackTraceToString(e));
+                } else {
+                    break;
                 }
-            } else {
-                break;
             }
+            extractEvent.setItems(items);
+            extractEvent.finish(ScrapeEvents.OK);
+        } catch (RuntimeException e) {
+            extractEvent.finish(e);
+            throw e;
+        } finally {
+            metrics.recordLatency(PageType.SEARCH, "extract", extractStart);
         }
     }
 
-    private String getJobTitle(Company company, String jobTitle) {
-        // remove often used "at XXX" job title phrases
-        for (String descriptor : jobDescriptors.getJobDescriptors(company.getName())) {
-            if (jobTitle.contains(descriptor)) {
-                return jobTitle.replace(descriptor, "");
-            }
-        }
-        return jobTitle;
+    // https://www.linkedin.com/search/results/people/?currentCompany=["1043"]&geoUrn=["101282230"]&keywords=it&origin=GLOBAL_SEARCH_HEADER&sid=:lw
+    private void navigateToInitialSearchPage(Page page, Company company, String searchTerm) {
+        LOG.info("{}Navigating to search page for '{}' ...", util.progress(), company.getName());
+        util.navigate(page, "https://www.linkedin.com/search/results/people/?keywords=" + searchTerm
+                + "&origin=SWITCH_SEARCH_VERTICAL", PageType.SEARCH);
+        util.buttonWithInput(page, "Standorte", "Ort hinzufügen", locations);
+        util.buttonWithInput(page, "Aktuelles Unternehmen", "Unternehmen hinzufügen", List.of(company.getName()));
+        // if we do not wait until all parts are in the url the url is incorrect
+        page.waitForURL(url -> url.contains("geoUrn") &&
+                url.contains("currentCompany") &&
+                url.contains("sid"));
     }
 
-    private String getEmail(Lead lead, String domain ) {
-        String firstName = lead.getFirstName().toLowerCase().replace(".", "").replace(" ", ".");
-        String lastName = lead.getLastName().toLowerCase().replace(".", "").replace(" ", ".");
-        firstName = firstName.replace("-", ".").replace("'", ".");
-        lastName = lastName.replace("-", ".").replace("'", ".");
-        return firstName + "." + lastName + "@" + domain;
-    }
+    // a company (without search term) or a single search page that is retried
+    private static class SearchUnit {
+        private Company company;
+        private Map<String, List<String>> urlParams;
+        private String searchTerm;
+        private int page;
+        private Integer maxNrLeads;
+        // the leads found for the company and search term so far, shared by its pages
+        private LeadStore termLeads;
 
-    private void setFirstAndLastName(Lead lead, String name) {
-        String nameToLower = name.toLowerCase();
-        // some names contain a ',' and then some stuff after it (titles usually) that we can discard
-        if(nameToLower.contains(",")) {
-            nameToLower = nameToLower.substring(0, nameToLower.indexOf(",")).trim();
+        SearchUnit(Company company, Map<String, List<String>> urlParams, String searchTerm, int page,
+                Integer maxNrLeads, LeadStore termLeads) {
+            this.company = company;
+            this.urlParams = urlParams;
+            this.searchTerm = searchTerm;
+            this.page = page;
+            this.maxNrLeads = maxNrLeads;
+            this.termLeads = termLeads;
         }
-        // some names contain stuff in parenthesis, also mostly titles
-        nameToLower = filterTextBetweenParenthesis(nameToLower).trim();
-        // Some special people think that emojis should be part of your name Linkedin -.-
-        nameToLower = filterEmoji(nameToLower).trim();
-        // replace most common special characters
-        for (String special : specialChars.specials()) {
-            nameToLower = nameToLower.replace(special, specialChars.replacementFor(special)).trim();
-        }
-        // replace unwanted name segments
-        for (String removableSegment : removableSegments.removableSegments()) {
-            nameToLower = nameToLower.replace(removableSegment, "").trim();
+
+        // -1 if the search term has no limit
+        Integer remainingLeads() {
+            return maxNrLeads == -1 ? -1 : Math.max(0, maxNrLeads - termLeads.size());
         }
 
-        // now split it into first name and last name
-        String firstName = nameToLower.substring(0, nameToLower.lastIndexOf(" ")).trim();
-        String lastName = nameToLower.substring(nameToLower.lastIndexOf(" ") + 1).trim();
-        lead.setFirstName(capitalizeSpecialCases(firstName).trim());
-        lead.setLastName(capitalizeSpecialCases(lastName).trim());
+        @Override
+        public String toString() {
+            return searchTerm == null ? "company '" + company.getName() + "'"
+                    : "page " + page + " of '" + company.getName() + "' and search term '" + searchTerm + "'";
+        }
     }
 
-    private String capitalizeSpecialCases(String name) {
-        // the first name might currently be in the format "aaa-bbb ccc"
-        // result should be Aaa-Bbb Ccc
-        String[] segments = name.split(" ");
-        for (int j = 0; j < segments.length; j++) {
-            String segment = segments[j];
-            if(segment.contains("-")) {
-                String[] subSegments = segment.split("-");
-                for (int i = 0; i < subSegments.length; i++) {
-                    subSegments[i] = capitalize(subSegments[i]);
-                }
-                segments[j] = String.join("-", subSegments);
-            } else {
-                segments[j] = capitalize(segment);
+    /**
+     * The page the job titles of a lead are scraped from. Both show the same
+     * entries, so they share the profile cache. The latencies and transferred
+     * bytes are recorded per page type, which allows to compare them.
+     */
+    enum Augmentation {
+        PROFILE(PageType.PROFILE),
+        EXPERIENCE_DETAILS(PageType.EXPERIENCE);
+
+        private PageType pageType;
+
+        Augmentation(PageType pageType) {
+            this.pageType = pageType;
+        }
+
+        // e.g. https://www.linkedin.com/in/max-mustermann-123?miniProfileUrn=... -> https://www.linkedin.com/in/max-mustermann-123/details/experience/
+        String url(String profileLink) {
+            if (this == PROFILE) {
+                return profileLink;
             }
+            String link = profileLink.trim();
+            if (link.contains("?")) {
+                link = link.substring(0, link.indexOf("?"));
+            }
+            if (link.contains("#")) {
+                link = link.substring(0, link.indexOf("#"));
+            }
+            while (link.endsWith("/")) {
+                link = link.substring(0, link.length() - 1);
+            }
+            return link + "/details/experience/";
         }
-        return String.join(" ", segments);
     }
 
-    private String filterEmoji(String source) {
-        String result = source;
-        if (source != null) {
-            Pattern emoji = Pattern.compile("[\\x{10000}-\\x{10FFFF}]",
-                    Pattern.UNICODE_CASE | Pattern.CASE_INSENSITIVE);
-            Matcher emojiMatcher = emoji.matcher(source);
-            if (emojiMatcher.find()) {
-                result = emojiMatcher.replaceAll("");
+    /**
+     * The two tabs of --prefetch. While the profile in the current tab is
+     * extracted, the next one already loads in the other tab, and the tabs swap
+     * roles for the next lead.
+     */
+    private class ProfilePrefetch {
+        private Page current;
+        private Page other;
+        // the navigation of the other tab, null if none
+        private Util.PendingNavigation loading;
+        // the profile to load next, null if there is none or it is cached
+        private String next;
+
+        ProfilePrefetch(Page page) {
+            current = page;
+            other = page.context().newPage();
+        }
+
+        Page current() {
+            current = util.recycle(current);
+            return current;
+        }
+
+        /**
+         * Returns the tab showing the profile, i.e., the other tab if the
+         * profile was prefetched and otherwise the given tab after navigating it.
+         */
+        Page open(Page page, String url) {
+            if (loading != null && url.equals(loading.getUrl())) {
+                Page tab = other;
+                other = page;
+                current = tab;
+                Util.PendingNavigation pending = loading;
+                loading = null;
+                util.finishNavigation(tab, pending);
+                return tab;
             }
+            abandon();
+            util.navigate(page, url, augmentation.pageType);
+            return page;
+        }
+
+        /**
+         * Starts loading the next profile in the other tab, unless it is the
+         * given one.
+         */
+        void start(String url) {
+            if (next == null || next.equals(url)) {
+                return;
+            }
+            abandon();
+            other = util.recycle(other);
+            try {
+                loading = util.startNavigation(other, next, augmentation.pageType);
+            } catch (PlaywrightException e) {
+                // the profile is navigated as usual then
+                LOG.debug("Could not prefetch {}: {}", next, e.getMessage());
+            }
+            next = null;
         }
-        return result;
-    }
 
-    private String filterTextBetweenParenthesis(String source) {
-        if (source != null) {
-            Pattern parenthesis = Pattern.compile("\\(.*?\\)");
-            Matcher parenthesisMatcher = parenthesis.matcher(source);
-            if (parenthesisMatcher.find()) {
-                source = parenthesisMatcher.replaceAll("");
-                return source;
+        private void abandon() {
+            if (loading != null) {
+                util.abandonNavigation(loading);
+                loading = null;
             }
-            return source;
         }
-        return source;
-    }
 
-    private String capitalize(String str) {
-        if (str == null || str.length() <= 1)
-            return str;
-        return str.substring(0, 1).toUpperCase() + str.substring(1);
+        /**
+         * Closes the second tab and returns the page to continue with.
+         */
+        Page close() {
+            abandon();
+            if (!other.isClosed()) {
+                other.close();
+            }
+            return current;
+        }
     }
 
-    // https://www.linkedin.com/search/results/people/?currentCompany=["1043"]&geoUrn=["101282230"]&keywords=it&origin=GLOBAL_SEARCH_HEADER&sid=:lw
-    private void navigateToInitialSearchPage(Page page, Company company, String searchTerm) {
-        System.out.println(util.progress() + "Navigating to search page for '" + company.getName() + "' ...");
-        page.navigate("https://www.linkedin.com/search/results/people/?keywords=" + searchTerm
-                + "&origin=SWITCH_SEARCH_VERTICAL");
-        util.buttonWithInput(page, "Standorte", "Ort hinzufügen", locations);
-        util.buttonWithInput(page, "Aktuelles Unternehmen", "Unternehmen hinzufügen", List.of(company.getName()));
-        // if we do not wait until all parts are in the url the url is incorrect
-        page.waitForURL(url -> url.contains("geoUrn") &&
-                url.contains("currentCompany") &&
-                url.contains("sid"));
+    private static class JobTitlesCodec implements TtlCache.Codec<List<String>> {
+        @Override
+        public void write(DataOutputStream out, List<String> jobTitles) throws IOException {
+            out.writeByte(jobTitles.size());
+            for (String jobTitle : jobTitles) {
+                out.writeUTF(jobTitle);
+            }
+        }
+
+        @Override
+        public List<String> read(DataInputStream in) throws IOException {
+            int size = in.readUnsignedByte();
+            List<String> jobTitles = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                jobTitles.add(in.readUTF());
+            }
+            return jobTitles;
+        }
     }
 }
@@ -0,0 +1,355 @@
+//DEPS com.microsoft.playwright:playwright:1.30.0
+//DEPS info.picocli:picocli:4.7.1
+//DEPS eu.easyrpa:easy-rpa-openframework-excel:1.0.0
+//DEPS org.apache.logging.log4j:log4j-core:2.19.0
+//DEPS org.apache.logging.log4j:log4j-layout-template-json:2.19.0
+//DEPS com.lmax:disruptor:3.4.4
+//DEPS org.jsoup:jsoup:1.15.4
+//DEPS com.google.code.gson:gson:2.10.1
+
+//SOURCES CompanyScraper.java
+//SOURCES LeadScraper.java
+//SOURCES DaemonJob.java
+//SOURCES util/Util.java
+//SOURCES util/ProgressTracker.java
+//SOURCES util/SecondLvlDomains.java
+//SOURCES util/LinkShortener.java
+//SOURCES util/SpecialChars.java
+//SOURCES util/JobDescriptors.java
+//SOURCES util/RemovableNameSegments.java
+//SOURCES util/LeadNormalizer.java
+//SOURCES util/LeadRecordFile.java
+//SOURCES util/Metrics.java
+//SOURCES util/LatencyHistogram.java
+//SOURCES util/NavigationTimings.java
+//SOURCES util/MonitoringOptions.java
+//SOURCES util/ScrapeContext.java
+//SOURCES util/ScrapeEvents.java
+//SOURCES util/ErrorCollector.java
+//SOURCES util/AsyncLogs.java
+//SOURCES util/ResilienceOptions.java
+//SOURCES util/SelectorRegistry.java
+//SOURCES util/TimeoutPolicy.java
+//SOURCES util/RetryQueue.java
+//SOURCES util/CircuitBreaker.java
+//SOURCES util/AccountPool.java
+//SOURCES util/RateBudget.java
+//SOURCES util/SessionKeeper.java
+//SOURCES util/PageRecycler.java
+//SOURCES util/PipelineQueue.java
+//SOURCES util/SearchPartitioner.java
+//SOURCES util/TtlCache.java
+//SOURCES util/PageType.java
+//SOURCES util/HtmlArchive.java
+//SOURCES util/HtmlExtractor.java
+//SOURCES util/HttpFetcher.java
+
+//SOURCES model/Lead.java
+//SOURCES model/LeadStore.java
+//SOURCES model/Company.java
+//SOURCES model/Contact.java
+
+//FILES log4j2.xml=../../../../resources/log4j2.xml
+//FILES log4j2.component.properties=../../../../resources/log4j2.component.properties
+
+//JAVAC_OPTIONS -encoding UTF8
+
+package io.qbilon.linkedin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Playwright;
+
+import io.qbilon.linkedin.model.Company;
+import io.qbilon.linkedin.model.LeadStore;
+import io.qbilon.linkedin.util.AsyncLogs;
+import io.qbilon.linkedin.util.CircuitBreaker;
+import io.qbilon.linkedin.util.ErrorCollector;
+import io.qbilon.linkedin.util.Metrics;
+import io.qbilon.linkedin.util.MonitoringOptions;
+import io.qbilon.linkedin.util.NavigationTimings;
+import io.qbilon.linkedin.util.PageRecycler;
+import io.qbilon.linkedin.util.PipelineQueue;
+import io.qbilon.linkedin.util.ResilienceOptions;
+import io.qbilon.linkedin.util.ScrapeContext;
+import io.qbilon.linkedin.util.SelectorRegistry;
+import io.qbilon.linkedin.util.SessionKeeper;
+import io.qbilon.linkedin.util.TimeoutPolicy;
+import io.qbilon.linkedin.util.Util;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
+
+@Command(name = "scrapeProspects", mixinStandardHelpOptions = true, version = "scrapeProspects 1.0", description = "Scrapes companies from LinkedIn for a given set of locations, industries and sizes and searches the leads of every company as soon as it is found")
+public class ProspectScraper implements Callable<Integer> {
+
+    @Option(names = { "-e", "--email" }, description = "The email to be used for login in LinkedIn")
+    private String email;
+    @Option(names = { "-p", "--password" }, description = "The password to be used for login in LinkedIn")
+    private String password;
+    @Option(names = { "-l",
+            "--locations" }, description = "The locations of the companies and leads that should be searched for. Use it like this: -l Deutschland -l Frankreich")
+    private List<String> locations;
+    @Option(names = { "-i",
+            "--industries" }, description = "The industries of companies that should be searched for. Use it like this -i Fertigung -i Maschinenbau")
+    private List<String> industries;
+    @Option(names = { "-s",
+            "--sizes" }, description = "The sizes of companies that should be searched for. Use it like this: -s 1000 -s 5000")
+    private List<String> sizes;
+    @Option(names = { "-t",
+            "--search" }, description = "The search terms and the number of possible leads to be included for the search (-1 means all possible). Use it like this: -t it=35 -t architect=20 -t test=-1")
+    private Map<String, Integer> searchTerms;
+    @Option(names = { "-d",
+            "--duplicates" }, description = "The excel with the emails of already existing leads used to filter duplicated ones. use it like this: -d path/to/excel.xlsx")
+    private File duplicatesExcelFile;
+    @Option(names = { "-v",
+            "--verbose" }, description = "Toggles verbose mode, e.g., prints exceptions")
+    private boolean verbose;
+    @Option(names = {
+            "-limit" }, description = "An optional limit to use for the maximum amount of companies to scrape", defaultValue = "-1")
+    private int limit;
+    @Option(names = { "-delay" }, description = "An optional delay in ms to use for all website interactions (default is 1000ms, variance is 50%)", defaultValue = "1000")
+    private int delay;
+    @Option(names = {
+            "--result-cap" }, description = "The maximum number of results LinkedIn lets us reach for a single search. Larger searches are split into partitions by size, location and industry (default is 1000)", defaultValue = "1000")
+    private int resultCap;
+    @Option(names = {
+            "--refresh-older-than" }, description = "The age in days after which cached about page data of a company is scraped again. 0 disables the cache (default is 30)", defaultValue = "30")
+    private int refreshOlderThan;
+    @Option(names = { "--skip-augmented" }, description = "If toggled this lets the scraper skip the augmentation phase of lead scraping.")
+    private boolean skipAugmented;
+    @Option(names = { "--profile-cache-ttl" }, description = "The time in hours for which scraped job titles of a profile are reused instead of visiting the profile again. 0 disables the cache (default is 168, i.e., one week)", defaultValue = "168")
+    private int profileCacheTtl;
+    @Mixin
+    private MonitoringOptions monitoring;
+    @Mixin
+    private ResilienceOptions resilience;
+
+    private Path currentDir = Paths.get("").toAbsolutePath();
+    private Path pathToContext = currentDir.resolve("state.json").toAbsolutePath();
+    private CompanyScraper companyScraper = new CompanyScraper();
+    private LeadScraper leadScraper = new LeadScraper();
+    private ErrorCollector errors;
+    private Metrics metrics;
+    private NavigationTimings navigationTimings;
+    // one per stage, so both report their own progress
+    private Util companyUtil;
+    private Util leadUtil;
+
+    public static void main(String[] args) {
+        int exitCode = new CommandLine(new ProspectScraper()).execute(args);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public Integer call() {
+        validateInput();
+        init();
+
+        AsyncLogs.drain();
+        System.out.println();
+        System.out.println("Starting LinkedIn Prospect Scraper in directory " + currentDir + " with:");
+        System.out.println("\temail = " + email);
+        System.out.println("\tpassword = " + password);
+        System.out.println("\tlocations = " + String.join(", ", locations));
+        System.out.println("\tindustries = " + String.join(", ", industries));
+        System.out.println("\tsizes = " + String.join(", ", sizes));
+        System.out.println("\tduplicates = " + duplicatesExcelFile.getAbsolutePath().toString());
+        System.out.println("\tsearchTerms = ");
+        for (Entry<String, Integer> entry : searchTerms.entrySet()) {
+            System.out.println("\t\t" + entry.getKey() + " = " + entry.getValue());
+        }
+        System.out.println("\tlimit = " + limit);
+        System.out.println("\tdelay = " + delay);
+        System.out.println("\tresultCap = " + resultCap);
+        System.out.println("\trefreshOlderThan = " + refreshOlderThan);
+        System.out.println("\tskipAugmented = " + skipAugmented);
+        System.out.println("\tprofileCacheTtl = " + profileCacheTtl);
+        System.out.println("\tmonitoring = " + monitoring.describe());
+        System.out.println("\tresilience = " + resilience.describe());
+        System.out.println();
+
+        try (Playwright playwright = Playwright.create()) {
+            run(playwright);
+        } catch (ErrorCollector.FailFastException e) {
+            AsyncLogs.drain();
+            System.out.println(e.getMessage());
+            System.out.println(errors.report(verbose));
+            return 1;
+        } catch (Exception e) {
+            AsyncLogs.drain();
+            if (verbose) {
+                e.printStackTrace();
+            }
+            System.out.println(
+                    "ERROR: Something went wrong. Sometimes this is due to a timing error. In this case just retry it. If the error persists, you could toggle verbose mode with '-v' in order to get more information");
+            return 1;
+        } finally {
+            metrics.close();
+        }
+        return 0;
+    }
+
+    private void init() {
+        metrics = monitoring.createMetrics();
+        errors = monitoring.createErrorCollector();
+        if (verbose) {
+            Configurator.setRootLevel(Level.DEBUG);
+        }
+        navigationTimings = monitoring.createNavigationTimings(metrics);
+        TimeoutPolicy timeouts = resilience.createTimeoutPolicy(metrics);
+        SelectorRegistry selectors = null;
+        try {
+            selectors = resilience.createSelectorRegistry(metrics);
+        } catch (IOException e) {
+            System.out.println("Could not read the selectors file: " + e.getMessage());
+            System.exit(1);
+        }
+        companyUtil = new Util(verbose, delay, metrics);
+        leadUtil = new Util(verbose, delay, metrics);
+        SessionKeeper session = resilience.createSessionKeeper(pathToContext, email, password, metrics);
+        PageRecycler recycler = resilience.createPageRecycler(metrics);
+        for (Util util : List.of(companyUtil, leadUtil)) {
+            util.setNavigationTimings(navigationTimings);
+            util.setSession(session);
+            util.setPageRecycler(recycler);
+            util.setWaitUntil(resilience.waitUntil());
+            util.setTimeouts(timeouts);
+            util.setSelectors(selectors);
+        }
+        CircuitBreaker breaker = resilience.createCircuitBreaker(metrics);
+        companyScraper.initForPipeline(locations, industries, sizes, limit, resultCap, refreshOlderThan, verbose,
+                companyUtil, metrics, errors);
+        leadScraper.initForPipeline(locations, searchTerms, duplicatesExcelFile, skipAugmented, profileCacheTtl,
+                verbose, resilience, leadUtil, metrics, errors, breaker);
+    }
+
+    private void validateInput() {
+        if (email == null || email.isBlank()) {
+            System.out.println("You need to provide an email!");
+            System.exit(1);
+        }
+        if (password == null || password.isBlank()) {
+            System.out.println("You need to provide a password!");
+            System.exit(1);
+        }
+        if (locations == null || locations.isEmpty()) {
+            System.out.println("You need to provide at least one location!");
+            System.exit(1);
+        }
+        if (industries == null || industries.isEmpty()) {
+            System.out.println("You need to provide at least one industry!");
+            System.exit(1);
+        }
+        if (sizes == null || sizes.isEmpty()) {
+            System.out.println("You need to provide at least one company size!");
+            System.exit(1);
+        }
+        if (searchTerms == null || searchTerms.isEmpty()) {
+            System.out.println("You need to provide at least one search term!");
+            System.exit(1);
+        }
+        if (duplicatesExcelFile == null || !duplicatesExcelFile.exists()) {
+            System.out.println("You need to provide an excel file containing existing lead emails!");
+            System.exit(1);
+        }
+    }
+
+    private void run(Playwright playwright) throws IOException, InterruptedException {
+        Browser browser = companyUtil.createBrowser(playwright, pathToContext);
+        BrowserContext context = browser.contexts().get(0);
+        ScrapeContext.setPhase("login");
+        Page page = companyUtil.loginToLinkedIn(context, email, password);
+        // the lead search starts from the current session instead of logging in again
+        String storageState = context.storageState();
+
+        PipelineQueue<Company> discovered = new PipelineQueue<>();
+        ExecutorService leadSearch = Executors.newSingleThreadExecutor();
+        Future<LeadStore> leads = leadSearch.submit(() -> searchLeads(discovered, storageState));
+        leadSearch.shutdown();
+        List<Company> companies;
+        try {
+            companies = companyScraper.discover(context, page, company -> {
+                if (leads.isDone()) {
+                    // the lead search only ends early if it failed
+                    awaitLeadSearch(leads);
+                }
+                discovered.add(company);
+            });
+        } finally {
+            discovered.close();
+        }
+        companyScraper.saveCompanies(companies);
+        context.storageState(new BrowserContext.StorageStateOptions().setPath(pathToContext));
+        context.close();
+        browser.close();
+        AsyncLogs.drain();
+        System.out.println();
+        System.out.println("Finished company discovery with " + companies.size() + " companies, waiting for the lead search ...");
+
+        LeadStore found = awaitLeadSearch(leads);
+
+        AsyncLogs.drain();
+        System.out.println();
+        System.out.println(" +++++ FINISHED SCRAPING :) +++++");
+        System.out.println("Found " + companies.size() + " companies and " + found.size() + " leads");
+        if (!errors.isEmpty()) {
+            System.out.println();
+            System.out.println(errors.report(verbose));
+        }
+        System.out.println("\nMetrics:");
+        System.out.println(metrics.summary());
+        System.out.println("\nLatencies [ms]:");
+        System.out.println(metrics.latencyTable());
+        System.out.println("Adaptive timeouts:");
+        System.out.println(companyUtil.getTimeouts().report());
+        if (navigationTimings != null) {
+            System.out.println("\nNavigation timings (average per page) [ms]:");
+            System.out.println(navigationTimings.report());
+        }
+        System.out.println("\nPlease review the scraped companies and leads! They might contain link shortener links, compromised data or unfitting leads");
+    }
+
+    private LeadStore searchLeads(PipelineQueue<Company> companies, String storageState) throws IOException {
+        // Playwright is not thread safe, so the lead search needs its own instance
+        ScrapeContext.setPhase("login");
+        try (Playwright playwright = Playwright.create()) {
+            Page page = leadUtil.openSession(playwright, storageState, email, password);
+            LeadStore leads = leadScraper.scrapeLeads(page, companies);
+            page.context().browser().close();
+            return leads;
+        }
+    }
+
+    private LeadStore awaitLeadSearch(Future<LeadStore> leads) {
+        try {
+            return leads.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the lead search", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("The lead search failed", e.getCause());
+        }
+    }
+}
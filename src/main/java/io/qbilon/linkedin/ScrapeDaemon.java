@@ -0,0 +1,538 @@
+//DEPS com.microsoft.playwright:playwright:1.30.0
+//DEPS info.picocli:picocli:4.7.1
+//DEPS eu.easyrpa:easy-rpa-openframework-excel:1.0.0
+//DEPS org.apache.logging.log4j:log4j-core:2.19.0
+//DEPS org.apache.logging.log4j:log4j-layout-template-json:2.19.0
+//DEPS com.lmax:disruptor:3.4.4
+//DEPS org.jsoup:jsoup:1.15.4
+//DEPS com.google.code.gson:gson:2.10.1
+
+//SOURCES DaemonJob.java
+//SOURCES CompanyScraper.java
+//SOURCES LeadScraper.java
+//SOURCES util/Util.java
+//SOURCES util/ProgressTracker.java
+//SOURCES util/SecondLvlDomains.java
+//SOURCES util/LinkShortener.java
+//SOURCES util/SpecialChars.java
+//SOURCES util/JobDescriptors.java
+//SOURCES util/RemovableNameSegments.java
+//SOURCES util/LeadNormalizer.java
+//SOURCES util/LeadRecordFile.java
+//SOURCES util/Metrics.java
+//SOURCES util/LatencyHistogram.java
+//SOURCES util/NavigationTimings.java
+//SOURCES util/MonitoringOptions.java
+//SOURCES util/ScrapeContext.java
+//SOURCES util/ScrapeEvents.java
+//SOURCES util/ErrorCollector.java
+//SOURCES util/AsyncLogs.java
+//SOURCES util/ResilienceOptions.java
+//SOURCES util/SelectorRegistry.java
+//SOURCES util/TimeoutPolicy.java
+//SOURCES util/RetryQueue.java
+//SOURCES util/CircuitBreaker.java
+//SOURCES util/AccountPool.java
+//SOURCES util/RateBudget.java
+//SOURCES util/SessionKeeper.java
+//SOURCES util/PageRecycler.java
+//SOURCES util/PipelineQueue.java
+//SOURCES util/SearchPartitioner.java
+//SOURCES util/TtlCache.java
+//SOURCES util/PageType.java
+//SOURCES util/HtmlArchive.java
+//SOURCES util/HtmlExtractor.java
+//SOURCES util/HttpFetcher.java
+
+//SOURCES model/Lead.java
+//SOURCES model/LeadStore.java
+//SOURCES model/Company.java
+//SOURCES model/Contact.java
+
+//FILES log4j2.xml=../../../../resources/log4j2.xml
+//FILES log4j2.component.properties=../../../../resources/log4j2.component.properties
+
+//JAVAC_OPTIONS -encoding UTF8
+
+package io.qbilon.linkedin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Playwright;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.qbilon.linkedin.util.AsyncLogs;
+import io.qbilon.linkedin.util.ErrorCollector;
+import io.qbilon.linkedin.util.Metrics;
+import io.qbilon.linkedin.util.MonitoringOptions;
+import io.qbilon.linkedin.util.NavigationTimings;
+import io.qbilon.linkedin.util.PageRecycler;
+import io.qbilon.linkedin.util.ProgressTracker;
+import io.qbilon.linkedin.util.ResilienceOptions;
+import io.qbilon.linkedin.util.ScrapeContext;
+import io.qbilon.linkedin.util.SelectorRegistry;
+import io.qbilon.linkedin.util.SessionKeeper;
+import io.qbilon.linkedin.util.TimeoutPolicy;
+import io.qbilon.linkedin.util.Util;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Model.OptionSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.ParseResult;
+
+/**
+ * Keeps Playwright, the browser, the login and the learned timeouts and
+ * selectors warm and runs scrape jobs submitted via a local JSON API:
+ *
+ * <pre>
+ * POST /jobs      {"command": "scrapeCompanies", "args": ["-l", "Deutschland", "-i", "Fertigung", "-s", "1000"]}
+ * GET  /jobs      all jobs
+ * GET  /jobs/{id} status, progress, errors and result of a job
+ * </pre>
+ *
+ * The args are the options of the {@link CompanyScraper} (scrapeCompanies) or
+ * {@link LeadScraper} (scrapeLeads) without the credentials. Jobs are queued
+ * and run one after the other on a single owner thread, as Playwright is not
+ * thread safe. The files of a job are written to its own directory.
+ *
+ * The monitoring and most resilience options are set once for the daemon, a
+ * job that passes them is rejected. Only the retry and circuit breaker
+ * options apply per job.
+ */
+@Command(name = "scrapeDaemon", mixinStandardHelpOptions = true, version = "scrapeDaemon 1.0", description = "Runs scrape jobs submitted via a local HTTP/JSON API in one warm browser session")
+public class ScrapeDaemon implements Callable<Integer> {
+    private static final Logger LOG = LogManager.getLogger(ScrapeDaemon.class);
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Set<String> JOB_OPTIONS = Set.of("--max-attempts", "--retry-backoff",
+            "--circuit-breaker-rate", "--circuit-breaker-window", "--circuit-breaker-pause");
+    private static final Set<String> DAEMON_OPTIONS = daemonOptions();
+
+    @Option(names = { "-e", "--email" }, description = "The email to be used for login in LinkedIn")
+    private String email;
+    @Option(names = { "-p", "--password" }, description = "The password to be used for login in LinkedIn")
+    private String password;
+    @Option(names = { "--port" }, description = "The local port of the job API (default is 8089)", defaultValue = "8089")
+    private int port;
+    @Option(names = { "--jobs-dir" }, description = "The directory in which every job gets a directory for its files (default is jobs)", defaultValue = "jobs")
+    private File jobsDir;
+    @Option(names = { "--keep-jobs" }, description = "The number of finished jobs that GET /jobs still lists, their files are kept anyway (default is 100)", defaultValue = "100")
+    private int keepJobs;
+    @Option(names = { "-v",
+            "--verbose" }, description = "Toggles verbose mode, e.g., prints exceptions")
+    private boolean verbose;
+    @Mixin
+    private MonitoringOptions monitoring;
+    @Mixin
+    private ResilienceOptions resilience;
+
+    private Path currentDir = Paths.get("").toAbsolutePath();
+    private Path pathToContext = currentDir.resolve("state.json").toAbsolutePath();
+    private Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private Map<String, Job> jobs = Collections.synchronizedMap(new LinkedHashMap<>());
+    private AtomicInteger jobCounter = new AtomicInteger();
+    private ExecutorService owner = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "scrape-owner"));
+    private HttpServer server;
+    private Metrics metrics;
+    private NavigationTimings navigationTimings;
+    private TimeoutPolicy timeouts;
+    private SelectorRegistry selectors;
+    private SessionKeeper session;
+    private PageRecycler recycler;
+    private Util util;
+
+    // only touched on the owner thread
+    private Playwright playwright;
+    private Browser browser;
+    private BrowserContext context;
+    private Page page;
+
+    public static void main(String[] args) {
+        int exitCode = new CommandLine(new ScrapeDaemon()).execute(args);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        validateInput();
+        init();
+
+        AsyncLogs.drain();
+        System.out.println();
+        System.out.println("Starting LinkedIn Scrape Daemon in directory " + currentDir + " with:");
+        System.out.println("\temail = " + email);
+        System.out.println("\tpassword = " + password);
+        System.out.println("\tport = " + port);
+        System.out.println("\tjobsDir = " + jobsDir.getAbsolutePath());
+        System.out.println("\tkeepJobs = " + keepJobs);
+        System.out.println("\tmonitoring = " + monitoring.describe());
+        System.out.println("\tresilience = " + resilience.describe());
+        System.out.println();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/jobs", this::handle);
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.start();
+        // log in right away, so the first job does not have to wait for it
+        owner.submit(() -> {
+            try {
+                ensureSession();
+            } catch (Exception e) {
+                LOG.error("ERROR: Could not start the browser session, retrying with the first job", e);
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+        LOG.info("Accepting jobs on http://localhost:{}/jobs", port);
+        owner.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        return 0;
+    }
+
+    private void init() throws IOException {
+        metrics = monitoring.createMetrics();
+        if (verbose) {
+            Configurator.setRootLevel(Level.DEBUG);
+        }
+        navigationTimings = monitoring.createNavigationTimings(metrics);
+        timeouts = resilience.createTimeoutPolicy(metrics);
+        try {
+            selectors = resilience.createSelectorRegistry(metrics);
+        } catch (IOException e) {
+            System.out.println("Could not read the selectors file: " + e.getMessage());
+            System.exit(1);
+        }
+        session = resilience.createSessionKeeper(pathToContext, email, password, metrics);
+        recycler = resilience.createPageRecycler(metrics);
+        util = configure(new Util(verbose, 0, metrics));
+        Files.createDirectories(jobsDir.toPath());
+    }
+
+    private void validateInput() {
+        if (email == null || email.isBlank()) {
+            System.out.println("You need to provide an email!");
+            System.exit(1);
+        }
+        if (password == null || password.isBlank()) {
+            System.out.println("You need to provide a password!");
+            System.exit(1);
+        }
+    }
+
+    private Util configure(Util util) {
+        util.setNavigationTimings(navigationTimings);
+        util.setTimeouts(timeouts);
+        util.setSelectors(selectors);
+        util.setSession(session);
+        util.setPageRecycler(recycler);
+        util.setWaitUntil(resilience.waitUntil());
+        return util;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath().replaceAll("/+$", "");
+            if (path.equals("/jobs") && method.equals("POST")) {
+                submit(exchange);
+            } else if (path.equals("/jobs") && method.equals("GET")) {
+                List<Map<String, Object>> all = new ArrayList<>();
+                synchronized (jobs) {
+                    for (Job job : jobs.values()) {
+                        all.add(job.toJson());
+                    }
+                }
+                respond(exchange, 200, all);
+            } else if (path.startsWith("/jobs/") && method.equals("GET")) {
+                Job job = jobs.get(path.substring("/jobs/".length()));
+                if (job == null) {
+                    respond(exchange, 404, Map.of("error", "Unknown job"));
+                } else {
+                    respond(exchange, 200, job.toJson());
+                }
+            } else {
+                respond(exchange, 405, Map.of("error", "Supported are POST /jobs, GET /jobs and GET /jobs/{id}"));
+            }
+        } catch (Exception e) {
+            LOG.debug("Request failed", e);
+            respond(exchange, 500, Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    private void submit(HttpExchange exchange) throws IOException {
+        JobRequest request;
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            request = gson.fromJson(reader, JobRequest.class);
+        } catch (JsonParseException e) {
+            respond(exchange, 400, Map.of("error", "Invalid json: " + e.getMessage()));
+            return;
+        }
+        if (request == null || request.command == null) {
+            respond(exchange, 400, Map.of("error", "Expected {\"command\": \"scrapeCompanies|scrapeLeads\", \"args\": [...]}"));
+            return;
+        }
+        DaemonJob scraper;
+        if (request.command.equals("scrapeCompanies")) {
+            scraper = new CompanyScraper();
+        } else if (request.command.equals("scrapeLeads")) {
+            scraper = new LeadScraper();
+        } else {
+            respond(exchange, 400, Map.of("error", "Unknown command " + request.command + ", supported are scrapeCompanies and scrapeLeads"));
+            return;
+        }
+        List<String> args = request.args == null ? List.of() : request.args;
+        ParseResult parsed;
+        try {
+            parsed = new CommandLine(scraper).parseArgs(args.toArray(new String[0]));
+        } catch (ParameterException e) {
+            respond(exchange, 400, Map.of("error", e.getMessage()));
+            return;
+        }
+        String error = ignoredOptionError(parsed, scraper);
+        if (error == null) {
+            error = scraper.validationError();
+        }
+        if (error != null) {
+            respond(exchange, 400, Map.of("error", error));
+            return;
+        }
+
+        String id = LocalDateTime.now().format(ID_FORMAT) + "-" + jobCounter.incrementAndGet();
+        Job job = new Job(id, request.command, args, scraper);
+        jobs.put(id, job);
+        owner.submit(() -> execute(job));
+        metrics.increment("jobs", "status", "submitted");
+        LOG.info("Queued job {}: {} {}", id, request.command, args);
+        exchange.getResponseHeaders().set("Location", "/jobs/" + id);
+        respond(exchange, 202, job.toJson());
+    }
+
+    private static Set<String> daemonOptions() {
+        Set<String> options = new HashSet<>();
+        for (Object mixin : List.of(new MonitoringOptions(), new ResilienceOptions())) {
+            for (OptionSpec option : CommandSpec.forAnnotatedObject(mixin).options()) {
+                options.add(option.longestName());
+            }
+        }
+        options.removeAll(JOB_OPTIONS);
+        return options;
+    }
+
+    private String ignoredOptionError(ParseResult parsed, DaemonJob scraper) {
+        for (OptionSpec option : parsed.matchedOptions()) {
+            String name = option.longestName();
+            if (DAEMON_OPTIONS.contains(name)) {
+                return "The option " + name + " is set for the whole daemon, pass it when starting the daemon";
+            }
+            if (scraper.ignoredOptions().contains(name)) {
+                return "The option " + name + " is not supported by daemon jobs";
+            }
+        }
+        return null;
+    }
+
+    private void execute(Job job) {
+        Util jobUtil = configure(job.scraper.createUtil(metrics));
+        ErrorCollector errors = monitoring.createErrorCollector();
+        job.start(jobUtil, errors);
+        LOG.info("Starting job {}", job.id);
+        try {
+            ensureSession();
+            Path outputDir = Files.createDirectories(jobsDir.toPath().toAbsolutePath().resolve(job.id));
+            Map<String, Object> result = job.scraper.runJob(context, page, outputDir, jobUtil, errors);
+            context.storageState(new BrowserContext.StorageStateOptions().setPath(pathToContext));
+            job.finish("SUCCEEDED", result, null);
+            metrics.increment("jobs", "status", "succeeded");
+            LOG.info("Finished job {}: {}", job.id, result);
+        } catch (Exception e) {
+            job.finish("FAILED", null, e.getMessage());
+            metrics.increment("jobs", "status", "failed");
+            LOG.error("ERROR: Job {} failed: {}", job.id, e.getMessage(), e);
+        } finally {
+            ScrapeContext.clearTarget();
+            evictFinishedJobs();
+        }
+    }
+
+    // the oldest finished jobs go first, the map keeps the submission order
+    private void evictFinishedJobs() {
+        synchronized (jobs) {
+            long finished = jobs.values().stream().filter(Job::isFinished).count();
+            Iterator<Job> iterator = jobs.values().iterator();
+            while (finished > keepJobs && iterator.hasNext()) {
+                if (iterator.next().isFinished()) {
+                    iterator.remove();
+                    finished--;
+                }
+            }
+        }
+    }
+
+    private void ensureSession() {
+        if (browser != null && browser.isConnected()) {
+            // the previous job may have replaced the page, only its last page is still open
+            if (page.isClosed()) {
+                page = context.newPage();
+            }
+            for (Page other : context.pages()) {
+                if (other != page) {
+                    other.close();
+                }
+            }
+            return;
+        }
+        closeSession();
+        ScrapeContext.setPhase("login");
+        playwright = Playwright.create();
+        browser = util.createBrowser(playwright, pathToContext);
+        context = browser.contexts().get(0);
+        page = util.loginToLinkedIn(context, email, password);
+    }
+
+    private void closeSession() {
+        if (playwright != null) {
+            // closes the browser as well
+            playwright.close();
+            playwright = null;
+            browser = null;
+        }
+    }
+
+    private void shutdown() {
+        LOG.info("Shutting down, the running job is finished first");
+        server.stop(0);
+        owner.submit(this::closeSession);
+        owner.shutdown();
+        try {
+            owner.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        metrics.close();
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static class JobRequest {
+        private String command;
+        private List<String> args;
+    }
+
+    private static class Job {
+        private String id;
+        private String command;
+        private List<String> args;
+        private DaemonJob scraper;
+        private String status = "QUEUED";
+        private Instant submitted = Instant.now();
+        private Instant started;
+        private Instant finished;
+        private Util util;
+        private ErrorCollector errors;
+        private Map<String, Object> result;
+        private String message;
+
+        Job(String id, String command, List<String> args, DaemonJob scraper) {
+            this.id = id;
+            this.command = command;
+            this.args = args;
+            this.scraper = scraper;
+        }
+
+        synchronized void start(Util util, ErrorCollector errors) {
+            this.util = util;
+            this.errors = errors;
+            this.status = "RUNNING";
+            this.started = Instant.now();
+        }
+
+        synchronized void finish(String status, Map<String, Object> result, String message) {
+            this.status = status;
+            this.result = result;
+            this.message = message;
+            this.finished = Instant.now();
+        }
+
+        synchronized boolean isFinished() {
+            return finished != null;
+        }
+
+        synchronized Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("id", id);
+            json.put("command", command);
+            json.put("args", args);
+            json.put("status", status);
+            json.put("submitted", submitted.toString());
+            if (started != null) {
+                json.put("started", started.toString());
+            }
+            if (finished != null) {
+                json.put("finished", finished.toString());
+            }
+            if (util != null && finished == null) {
+                ProgressTracker.Progress progress = util.currentProgress();
+                json.put("progress", Map.of("count", progress.getCount(), "size", progress.getSize(),
+                        "elapsedMillis", progress.getElapsed()));
+            }
+            if (errors != null) {
+                json.put("errors", errors.errorCount());
+                if (!errors.isEmpty()) {
+                    json.put("errorReport", errors.report(false));
+                }
+            }
+            if (result != null) {
+                json.put("result", result);
+            }
+            if (message != null) {
+                json.put("message", message);
+            }
+            return json;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package io.qbilon.linkedin.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar storage for a large number of leads. Instead of keeping one object
+ * with a dozen strings per lead, every field is stored in its own array.
+ * Fields that repeat a lot (job titles, industries and the status fields) are
+ * dictionary encoded, so each distinct value is only held once. The emails and
+ * profile links share a dictionary as well, whose codes index the row of the
+ * lead, so no map from key to boxed row index is needed.
+ *
+ * Leads are deduplicated by their email, i.e., putting a lead with an already
+ * known email replaces the existing one. Leads handed out by {@link #get(int)}
+ * are copies, changes have to be written back with {@link #set(int, Lead)}.
+ */
+public class LeadStore implements Iterable<Lead> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Dictionary jobTitleDictionary = new Dictionary();
+    private Dictionary industryDictionary = new Dictionary();
+    private Dictionary statusDictionary = new Dictionary();
+    // emails and profile links never collide, so they share one dictionary
+    private Dictionary keyDictionary = new Dictionary();
+    // the row of each key code, -1 if no row holds the key anymore
+    private int[] rows = new int[0];
+
+    private int size = 0;
+    private String[] firstNames = new String[INITIAL_CAPACITY];
+    private String[] lastNames = new String[INITIAL_CAPACITY];
+    private int[] emails = new int[INITIAL_CAPACITY];
+    private int[] profileLinks = new int[INITIAL_CAPACITY];
+    private int[] jobTitles = new int[INITIAL_CAPACITY];
+    private int[] previousJobTitles1 = new int[INITIAL_CAPACITY];
+    private int[] previousJobTitles2 = new int[INITIAL_CAPACITY];
+    private int[] previousJobTitles3 = new int[INITIAL_CAPACITY];
+    private int[] industries = new int[INITIAL_CAPACITY];
+    private int[] lifecyclePhases = new int[INITIAL_CAPACITY];
+    private int[] leadStatuses = new int[INITIAL_CAPACITY];
+    private int[] users = new int[INITIAL_CAPACITY];
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsEmail(String email) {
+        return indexOfEmail(email) != -1;
+    }
+
+    public int indexOfEmail(String email) {
+        return rowOf(email);
+    }
+
+    public int indexOfProfileLink(String profileLink) {
+        return rowOf(profileLink);
+    }
+
+    private int rowOf(String key) {
+        int code = keyDictionary.find(key);
+        return code == -1 ? -1 : rows[code];
+    }
+
+    /**
+     * Adds the given lead or replaces the lead with the same email. Returns the
+     * index of the lead.
+     */
+    public int put(Lead lead) {
+        int index = indexOfEmail(lead.getEmail());
+        if (index == -1) {
+            index = size;
+            ensureCapacity(size + 1);
+            // a new row holds no keys yet
+            emails[index] = -1;
+            profileLinks[index] = -1;
+            size++;
+        }
+        set(index, lead);
+        return index;
+    }
+
+    public void putAll(LeadStore other) {
+        for (int i = 0; i < other.size(); i++) {
+            put(other.get(i));
+        }
+    }
+
+    public void putAll(List<Lead> leads) {
+        for (Lead lead : leads) {
+            put(lead);
+        }
+    }
+
+    /**
+     * Replaces the lead at the given index. Its email must not belong to
+     * another lead, as that would break the deduplication.
+     */
+    public void set(int index, Lead lead) {
+        checkIndex(index);
+        int other = indexOfEmail(lead.getEmail());
+        if (other != -1 && other != index) {
+            throw new IllegalArgumentException("The email " + lead.getEmail() + " already belongs to the lead at "
+                    + other + ", use put to replace it");
+        }
+        int email = keyDictionary.encode(lead.getEmail());
+        int profileLink = keyDictionary.encode(lead.getProfileLink());
+        unindex(emails[index], email, index);
+        unindex(profileLinks[index], profileLink, index);
+        firstNames[index] = lead.getFirstName();
+        lastNames[index] = lead.getLastName();
+        emails[index] = email;
+        profileLinks[index] = profileLink;
+        jobTitles[index] = jobTitleDictionary.encode(lead.getJobTitle());
+        previousJobTitles1[index] = jobTitleDictionary.encode(lead.getPreviousJobTitle1());
+        previousJobTitles2[index] = jobTitleDictionary.encode(lead.getPreviousJobTitle2());
+        previousJobTitles3[index] = jobTitleDictionary.encode(lead.getPreviousJobTitle3());
+        industries[index] = industryDictionary.encode(lead.getIndustry());
+        lifecyclePhases[index] = statusDictionary.encode(lead.getLifecyclePhase());
+        leadStatuses[index] = statusDictionary.encode(lead.getLeadStatus());
+        users[index] = statusDictionary.encode(lead.getUser());
+        index(email, index);
+        index(profileLink, index);
+    }
+
+    private void index(int code, int row) {
+        if (code == -1) {
+            return;
+        }
+        if (code >= rows.length) {
+            int oldLength = rows.length;
+            rows = Arrays.copyOf(rows, Math.max(code + 1, oldLength * 2));
+            Arrays.fill(rows, oldLength, rows.length, -1);
+        }
+        rows[code] = row;
+    }
+
+    // the key stays in the dictionary, keys rarely change
+    private void unindex(int oldCode, int newCode, int row) {
+        if (oldCode != -1 && oldCode != newCode && rows[oldCode] == row) {
+            rows[oldCode] = -1;
+        }
+    }
+
+    public Lead get(int index) {
+        checkIndex(index);
+        Lead lead = new Lead();
+        lead.setFirstName(firstNames[index]);
+        lead.setLastName(lastNames[index]);
+        lead.setEmail(keyDictionary.decode(emails[index]));
+        lead.setProfileLink(keyDictionary.decode(profileLinks[index]));
+        lead.setJobTitle(jobTitleDictionary.decode(jobTitles[index]));
+        lead.setPreviousJobTitle1(jobTitleDictionary.decode(previousJobTitles1[index]));
+        lead.setPreviousJobTitle2(jobTitleDictionary.decode(previousJobTitles2[index]));
+        lead.setPreviousJobTitle3(jobTitleDictionary.decode(previousJobTitles3[index]));
+        lead.setIndustry(industryDictionary.decode(industries[index]));
+        lead.setLifecyclePhase(statusDictionary.decode(lifecyclePhases[index]));
+        lead.setLeadStatus(statusDictionary.decode(leadStatuses[index]));
+        lead.setUser(statusDictionary.decode(users[index]));
+        return lead;
+    }
+
+    /**
+     * A read only view that materializes each lead on access, e.g., for
+     * inserting the leads into an excel table.
+     */
+    public List<Lead> asList() {
+        return new AbstractList<Lead>() {
+            @Override
+            public Lead get(int index) {
+                return LeadStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Lead> iterator() {
+        return asList().iterator();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size + " leads");
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= emails.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, emails.length * 2);
+        firstNames = Arrays.copyOf(firstNames, newCapacity);
+        lastNames = Arrays.copyOf(lastNames, newCapacity);
+        emails = Arrays.copyOf(emails, newCapacity);
+        profileLinks = Arrays.copyOf(profileLinks, newCapacity);
+        jobTitles = Arrays.copyOf(jobTitles, newCapacity);
+        previousJobTitles1 = Arrays.copyOf(previousJobTitles1, newCapacity);
+        previousJobTitles2 = Arrays.copyOf(previousJobTitles2, newCapacity);
+        previousJobTitles3 = Arrays.copyOf(previousJobTitles3, newCapacity);
+        industries = Arrays.copyOf(industries, newCapacity);
+        lifecyclePhases = Arrays.copyOf(lifecyclePhases, newCapacity);
+        leadStatuses = Arrays.copyOf(leadStatuses, newCapacity);
+        users = Arrays.copyOf(users, newCapacity);
+    }
+
+    /**
+     * Maps each distinct value to an int code. null is encoded as -1.
+     */
+    private static class Dictionary {
+        private Map<String, Integer> codes = new HashMap<>();
+        private List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        // -1 if the value is not known, without adding it
+        int find(String value) {
+            return value == null ? -1 : codes.getOrDefault(value, -1);
+        }
+
+        String decode(int code) {
+            return code == -1 ? null : values.get(code);
+        }
+    }
+}
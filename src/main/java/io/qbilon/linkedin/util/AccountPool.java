@@ -0,0 +1,126 @@
+package io.qbilon.linkedin.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The LinkedIn accounts a run may use. Every account has its own storage state
+ * file, so the sessions do not interfere, and its own {@link RateBudget}. An
+ * account that runs into a security checkpoint is quarantined for the rest of
+ * the run and its work is taken over by the others.
+ *
+ * The accounts file is a properties file with one {@code email=password} line
+ * per account.
+ */
+public class AccountPool {
+
+    private static final Logger LOG = LogManager.getLogger(AccountPool.class);
+
+    private List<Account> accounts = new ArrayList<>();
+    private Metrics metrics;
+
+    public AccountPool(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param stateDir           the directory of the storage state files
+     * @param navigationsPerHour the budget of every account, 0 means unlimited
+     */
+    public static AccountPool load(Path file, Path stateDir, int navigationsPerHour, Metrics metrics)
+            throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        AccountPool pool = new AccountPool(metrics);
+        // sorted, so the workers start in the same order in every run
+        for (String email : new TreeSet<>(properties.stringPropertyNames())) {
+            Path stateFile = stateDir.resolve("state-" + email.replaceAll("[^A-Za-z0-9.-]", "_") + ".json");
+            pool.accounts.add(new Account(email, properties.getProperty(email).trim(), stateFile,
+                    new RateBudget(navigationsPerHour, Math.max(1, navigationsPerHour / 20), metrics)));
+        }
+        if (pool.accounts.isEmpty()) {
+            throw new IOException("No accounts found in " + file);
+        }
+        return pool;
+    }
+
+    public List<Account> accounts() {
+        return accounts;
+    }
+
+    public synchronized void quarantine(Account account, String reason) {
+        if (account.quarantineReason == null) {
+            account.quarantineReason = reason;
+            metrics.increment("accounts_quarantined");
+            LOG.warn("WARNING: Quarantined account {}: {}", account.email, reason);
+        }
+    }
+
+    /**
+     * One line per account with its state, printed at the end of a run.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Account account : accounts) {
+            sb.append("\t").append(account.email).append(": ").append(account.units).append(" units")
+                    .append(account.isQuarantined() ? ", quarantined (" + account.quarantineReason + ")" : "")
+                    .append("\n");
+        }
+        return sb.toString();
+    }
+
+    public static class Account {
+        private String email;
+        private String password;
+        private Path stateFile;
+        private RateBudget budget;
+        private volatile String quarantineReason;
+        private volatile int units;
+
+        Account(String email, String password, Path stateFile, RateBudget budget) {
+            this.email = email;
+            this.password = password;
+            this.stateFile = stateFile;
+            this.budget = budget;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public Path getStateFile() {
+            return stateFile;
+        }
+
+        public RateBudget getBudget() {
+            return budget;
+        }
+
+        public boolean isQuarantined() {
+            return quarantineReason != null;
+        }
+
+        /**
+         * Counts a finished unit of work, only called by the worker of the
+         * account.
+         */
+        public void unitDone() {
+            units++;
+        }
+    }
+}
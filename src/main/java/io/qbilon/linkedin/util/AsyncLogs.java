@@ -0,0 +1,42 @@
+package io.qbilon.linkedin.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.async.AsyncLoggerContext;
+import org.apache.logging.log4j.core.jmx.RingBufferAdmin;
+
+/**
+ * All loggers are asynchronous (see log4j2.component.properties), so a log
+ * line may reach the console after something printed to {@code System.out}
+ * later on. The reports are printed directly, so they wait for the loggers
+ * first.
+ */
+public class AsyncLogs {
+
+    private static final long MAX_WAIT_MILLIS = 1000;
+
+    private AsyncLogs() {
+    }
+
+    /**
+     * Waits until the loggers wrote everything logged so far, but at most a
+     * second, e.g. if another thread keeps logging.
+     */
+    public static void drain() {
+        Object context = LogManager.getContext(false);
+        if (context instanceof AsyncLoggerContext) {
+            RingBufferAdmin ringBuffer = ((AsyncLoggerContext) context).createRingBufferAdmin();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_MILLIS);
+            while (ringBuffer.getRemainingCapacity() < ringBuffer.getBufferSize() && System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        System.out.flush();
+    }
+}
@@ -0,0 +1,123 @@
+package io.qbilon.linkedin.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Pauses the scraper when too many of the most recent units failed, which
+ * usually means LinkedIn throttles us or is down. Hammering on in that state
+ * only produces more failures.
+ *
+ * After the pause a single unit is let through. If it fails the breaker opens
+ * again with twice the pause, if it succeeds the breaker closes and the pause
+ * is reset.
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOG = LogManager.getLogger(CircuitBreaker.class);
+    private static final int MAX_PAUSE_FACTOR = 8;
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private double failureRate;
+    private long pauseMillis;
+    private Metrics metrics;
+    private State state = State.CLOSED;
+    private long currentPause;
+    private long openUntil;
+    // ring of the most recent outcomes, true means failed
+    private boolean[] window;
+    private int next;
+    private int filled;
+    private int windowFailures;
+
+    /**
+     * @param failureRate failure rate (0-1) over the last units at which the
+     *                    breaker opens, 0 disables it
+     * @param window      number of most recent units the rate is computed on
+     * @param pauseMillis how long the breaker stays open the first time
+     */
+    public CircuitBreaker(double failureRate, int window, long pauseMillis, Metrics metrics) {
+        this.failureRate = failureRate;
+        this.window = new boolean[Math.max(1, window)];
+        this.pauseMillis = pauseMillis;
+        this.currentPause = pauseMillis;
+        this.metrics = metrics;
+    }
+
+    public synchronized void succeeded() {
+        if (state == State.HALF_OPEN) {
+            LOG.info("Circuit breaker closed again");
+            state = State.CLOSED;
+            currentPause = pauseMillis;
+        }
+        record(false);
+    }
+
+    public synchronized void failed() {
+        if (state == State.HALF_OPEN) {
+            currentPause = Math.min(currentPause * 2, pauseMillis * MAX_PAUSE_FACTOR);
+            open("the first unit after the pause failed again");
+            return;
+        }
+        record(true);
+        if (failureRate > 0 && state == State.CLOSED && filled == window.length
+                && (double) windowFailures / filled >= failureRate) {
+            open(String.format("%d of the last %d units failed", windowFailures, filled));
+        }
+    }
+
+    /**
+     * Blocks while the breaker is open. Returns false if the thread was
+     * interrupted while waiting.
+     */
+    public boolean awaitClosed() {
+        long wait;
+        synchronized (this) {
+            if (state != State.OPEN) {
+                return true;
+            }
+            wait = openUntil - System.currentTimeMillis();
+        }
+        if (wait > 0) {
+            metrics.add("circuit_breaker_paused_ms", wait);
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                state = State.HALF_OPEN;
+            }
+        }
+        return true;
+    }
+
+    private void open(String reason) {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + currentPause;
+        // the outcomes before the pause say nothing about the time after it
+        next = 0;
+        filled = 0;
+        windowFailures = 0;
+        metrics.increment("circuit_breaker_opened");
+        LOG.warn("WARNING: Circuit breaker opened, {}. Pausing for {}", reason, ProgressTracker.toTime(currentPause));
+    }
+
+    private void record(boolean failed) {
+        if (filled == window.length && window[next]) {
+            windowFailures--;
+        }
+        window[next] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        next = (next + 1) % window.length;
+        filled = Math.min(filled + 1, window.length);
+    }
+}
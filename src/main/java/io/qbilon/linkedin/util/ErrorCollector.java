@@ -0,0 +1,273 @@
+package io.qbilon.linkedin.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Collects the errors and warnings of a run in bounded memory. Errors are
+ * grouped by exception type and call site, so a broken selector that fails
+ * for thousands of leads shows up as a single line with a count and a few
+ * samples. Only the most recent raw errors are kept with their stack trace.
+ *
+ * Together with {@link #succeeded()} the collector knows the failure rate of
+ * each phase. If the rate over the last operations of a phase exceeds the
+ * configured threshold, the next error throws a {@link FailFastException}
+ * instead of letting the scraper run into the same error for hours.
+ */
+public class ErrorCollector {
+
+    private static final Logger LOG = LogManager.getLogger(ErrorCollector.class);
+    private static final int MAX_SAMPLES = 3;
+    private static final int MAX_RECENT = 50;
+    private static final int MAX_STACK_FRAMES = 15;
+    private static final String NO_PHASE = "-";
+
+    private double failFastRate;
+    private int failFastWindow;
+    private Map<String, Group> errors = new LinkedHashMap<>();
+    private Map<String, Group> warnings = new LinkedHashMap<>();
+    private Deque<String> recent = new ArrayDeque<>();
+    private Map<String, PhaseStats> phases = new LinkedHashMap<>();
+
+    /**
+     * @param failFastRate   failure rate (0-1) over the last operations of a
+     *                       phase at which the run is aborted, 0 disables it
+     * @param failFastWindow number of most recent operations of a phase the
+     *                       rate is computed on
+     */
+    public ErrorCollector(double failFastRate, int failFastWindow) {
+        this.failFastRate = failFastRate;
+        this.failFastWindow = failFastWindow;
+    }
+
+    public ErrorCollector() {
+        this(0, 0);
+    }
+
+    /**
+     * To be called for every operation that worked, so failure rates can be
+     * computed.
+     */
+    public synchronized void succeeded() {
+        phaseStats().record(true);
+    }
+
+    public void error(String message) {
+        error(message, null);
+    }
+
+    /**
+     * Records a failed operation. Throws a {@link FailFastException} if the
+     * failure rate of the current phase is above the threshold.
+     */
+    public synchronized void error(String message, Exception e) {
+        if (e instanceof FailFastException) {
+            // already decided, don't count the same failure on every level
+            throw (FailFastException) e;
+        }
+        String site = e == null ? callSite() : callSite(e);
+        String type = e == null ? "" : e.getClass().getSimpleName() + " at ";
+        errors.computeIfAbsent(type + site, key -> new Group()).add(message + context());
+        recent.addLast(message + context() + (e == null ? "" : "\n" + stackTrace(e)));
+        if (recent.size() > MAX_RECENT) {
+            recent.removeFirst();
+        }
+        LOG.debug("{}", message, e);
+
+        PhaseStats stats = phaseStats();
+        stats.record(false);
+        if (failFastRate > 0 && stats.isFull() && stats.failureRate() >= failFastRate) {
+            throw new FailFastException(String.format(
+                    "ERROR: %.0f%% of the last %d operations in phase '%s' failed, most likely the page structure changed. Aborting!",
+                    stats.failureRate() * 100, stats.window.length, phaseName()));
+        }
+    }
+
+    public synchronized void warning(String message) {
+        warnings.computeIfAbsent(callSite(), key -> new Group()).add(message + context());
+    }
+
+    public synchronized boolean isEmpty() {
+        return errors.isEmpty() && warnings.isEmpty();
+    }
+
+    public synchronized int errorCount() {
+        return errors.values().stream().mapToInt(group -> group.count).sum();
+    }
+
+    /**
+     * Failure rate of all operations of the given phase so far, 0 if nothing
+     * was recorded.
+     */
+    public synchronized double failureRate(String phase) {
+        PhaseStats stats = phases.get(phase);
+        return stats == null || stats.total == 0 ? 0 : (double) stats.failures / stats.total;
+    }
+
+    /**
+     * The grouped warnings and errors, the failure rate per phase and, in
+     * verbose mode, the most recent errors with their stack traces.
+     */
+    public synchronized String report(boolean verbose) {
+        StringBuilder sb = new StringBuilder();
+        if (!warnings.isEmpty()) {
+            sb.append("WARNINGS:\n");
+            appendGroups(sb, warnings);
+        }
+        if (!errors.isEmpty()) {
+            sb.append(sb.length() == 0 ? "" : "\n").append("ERRORS (").append(errorCount()).append(" in total, ")
+                    .append(errors.size()).append(" distinct):\n");
+            appendGroups(sb, errors);
+        }
+        if (phases.values().stream().anyMatch(stats -> stats.failures > 0)) {
+            sb.append("\nFAILURE RATES:\n");
+            for (Map.Entry<String, PhaseStats> entry : phases.entrySet()) {
+                PhaseStats stats = entry.getValue();
+                sb.append(String.format("\t%s: %d of %d failed (%.1f%%)%n", entry.getKey(), stats.failures,
+                        stats.total, stats.total == 0 ? 0.0 : 100.0 * stats.failures / stats.total));
+            }
+        }
+        if (verbose && !recent.isEmpty()) {
+            sb.append("\nMOST RECENT ERRORS:\n");
+            for (String error : recent) {
+                sb.append("\t").append(error.replace("\n", "\n\t")).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    private void appendGroups(StringBuilder sb, Map<String, Group> groups) {
+        for (Map.Entry<String, Group> entry : groups.entrySet()) {
+            Group group = entry.getValue();
+            sb.append("\t").append(group.count).append("x ").append(entry.getKey()).append("\n");
+            for (String sample : group.samples) {
+                sb.append("\t\t").append(sample).append("\n");
+            }
+        }
+    }
+
+    private PhaseStats phaseStats() {
+        return phases.computeIfAbsent(phaseName(), key -> new PhaseStats(Math.max(1, failFastWindow)));
+    }
+
+    private String phaseName() {
+        String phase = ScrapeContext.phase();
+        return phase == null ? NO_PHASE : phase;
+    }
+
+    private String context() {
+        List<String> context = new ArrayList<>();
+        if (ScrapeContext.company() != null) {
+            context.add("company=" + ScrapeContext.company());
+        }
+        if (ScrapeContext.searchTerm() != null) {
+            context.add("searchTerm=" + ScrapeContext.searchTerm());
+        }
+        if (ScrapeContext.pageNumber() > 0) {
+            context.add("page=" + ScrapeContext.pageNumber());
+        }
+        return context.isEmpty() ? "" : " " + context;
+    }
+
+    // the first frame of our own code, the frames within Playwright are the same for every failure
+    private static String callSite(Exception e) {
+        for (StackTraceElement frame : e.getStackTrace()) {
+            if (frame.getClassName().startsWith("io.qbilon.") && !frame.getClassName().equals(ErrorCollector.class.getName())) {
+                return frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1) + "."
+                        + frame.getMethodName() + "(" + frame.getFileName() + ":" + frame.getLineNumber() + ")";
+            }
+        }
+        return callSite();
+    }
+
+    private static String callSite() {
+        return StackWalker.getInstance()
+                .walk(frames -> frames
+                        .filter(frame -> !frame.getClassName().equals(ErrorCollector.class.getName()))
+                        .findFirst()
+                        .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1) + "."
+                                + frame.getMethodName() + "(" + frame.getFileName() + ":" + frame.getLineNumber() + ")")
+                        .orElse("unknown"));
+    }
+
+    private static String stackTrace(Exception e) {
+        StackTraceElement[] frames = e.getStackTrace();
+        if (frames.length > MAX_STACK_FRAMES) {
+            Exception truncated = new Exception(e.toString());
+            StackTraceElement[] kept = new StackTraceElement[MAX_STACK_FRAMES];
+            System.arraycopy(frames, 0, kept, 0, MAX_STACK_FRAMES);
+            truncated.setStackTrace(kept);
+            e = truncated;
+        }
+        StringWriter sw = new StringWriter();
+        e.printStackTrace(new PrintWriter(sw));
+        return sw.toString().trim();
+    }
+
+    private static class Group {
+        private int count;
+        private List<String> samples = new ArrayList<>();
+
+        void add(String sample) {
+            count++;
+            if (samples.size() < MAX_SAMPLES) {
+                samples.add(sample);
+            }
+        }
+    }
+
+    private static class PhaseStats {
+        private int total;
+        private int failures;
+        // ring of the most recent outcomes, true means failed
+        private boolean[] window;
+        private int next;
+        private int filled;
+        private int windowFailures;
+
+        PhaseStats(int size) {
+            this.window = new boolean[size];
+        }
+
+        void record(boolean success) {
+            total++;
+            if (!success) {
+                failures++;
+            }
+            if (filled == window.length && window[next]) {
+                windowFailures--;
+            }
+            window[next] = !success;
+            if (!success) {
+                windowFailures++;
+            }
+            next = (next + 1) % window.length;
+            filled = Math.min(filled + 1, window.length);
+        }
+
+        boolean isFull() {
+            return filled == window.length;
+        }
+
+        double failureRate() {
+            return filled == 0 ? 0 : (double) windowFailures / filled;
+        }
+    }
+
+    public static class FailFastException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public FailFastException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.qbilon.linkedin.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Stores the html of visited pages, so they can be re-extracted later on
+ * without a browser. Pages are gzipped and stored under their sha-256 hash,
+ * i.e., identical pages are only stored once. An index file keeps one line per
+ * visit with the timestamp, page type, url, hash and some context (e.g. the
+ * company the page was scraped for).
+ */
+public class HtmlArchive {
+
+    private static final Logger LOG = LogManager.getLogger(HtmlArchive.class);
+
+    private Path objects;
+    private Path index;
+    private Metrics metrics;
+
+    public HtmlArchive(Path directory, Metrics metrics) {
+        this.objects = directory.resolve("objects");
+        this.index = directory.resolve("index.tsv");
+        this.metrics = metrics;
+    }
+
+    /**
+     * Convenience for building the context of an archived page from key/value
+     * pairs. null values are skipped.
+     */
+    public static Map<String, String> context(String... keyValues) {
+        Map<String, String> context = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            if (keyValues[i + 1] != null) {
+                context.put(keyValues[i], keyValues[i + 1]);
+            }
+        }
+        return context;
+    }
+
+    /**
+     * A page that cannot be archived, e.g. because the disk is full, is logged
+     * and counted, the scrape goes on.
+     */
+    public synchronized void archive(PageType type, String url, String html, Map<String, String> context) {
+        try {
+            byte[] content = html.getBytes(StandardCharsets.UTF_8);
+            String hash = sha256(content);
+            Path object = objectPath(hash);
+            if (!object.toFile().exists()) {
+                Files.createDirectories(object.getParent());
+                Path tmp = object.resolveSibling(hash + ".tmp");
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                    out.write(content);
+                }
+                Files.move(tmp, object);
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(index, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(System.currentTimeMillis() + "\t" + type + "\t" + url + "\t" + hash + "\t"
+                        + encodeContext(context));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            metrics.increment("archive_failures", "type", type.name());
+            LOG.warn("WARNING: Could not archive {}: {}", url, e.toString());
+        }
+    }
+
+    public List<Entry> entries() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!index.toFile().exists()) {
+            return entries;
+        }
+        for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+            String[] columns = line.split("\t", -1);
+            if (columns.length < 5) {
+                // incomplete line of a crashed run
+                continue;
+            }
+            entries.add(new Entry(Long.parseLong(columns[0]), PageType.valueOf(columns[1]), columns[2], columns[3],
+                    decodeContext(columns[4])));
+        }
+        return entries;
+    }
+
+    public String load(Entry entry) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(objectPath(entry.getHash())))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private Path objectPath(String hash) {
+        return objects.resolve(hash.substring(0, 2)).resolve(hash + ".html.gz");
+    }
+
+    private String sha256(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String encodeContext(Map<String, String> context) {
+        return context.entrySet().stream()
+                .map(entry -> URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8) + "="
+                        + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+    }
+
+    private Map<String, String> decodeContext(String context) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (context.isBlank()) {
+            return result;
+        }
+        for (String pair : context.split("&")) {
+            int idx = pair.indexOf("=");
+            result.put(URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    public static class Entry {
+        private long timestamp;
+        private PageType type;
+        private String url;
+        private String hash;
+        private Map<String, String> context;
+
+        Entry(long timestamp, PageType type, String url, String hash, Map<String, String> context) {
+            this.timestamp = timestamp;
+            this.type = type;
+            this.url = url;
+            this.hash = hash;
+            this.context = context;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public PageType getType() {
+            return type;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public Map<String, String> getContext() {
+            return context;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package io.qbilon.linkedin.util;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import io.qbilon.linkedin.model.Company;
+import io.qbilon.linkedin.model.Lead;
+
+/**
+ * Java side counterparts of the browser based extraction in the scrapers.
+ * They work on already rendered html, e.g. from the {@link HtmlArchive}, and
+ * use the same selectors as the scrapers.
+ */
+public class HtmlExtractor {
+
+    private LeadNormalizer normalizer = new LeadNormalizer();
+    private SecondLvlDomains slds = new SecondLvlDomains();
+
+    public List<Lead> extractLeads(Document doc, Company company) {
+        List<Lead> leads = new ArrayList<>();
+        for (Element resultItem : doc.select(".search-results-container li.reusable-search__result-container")) {
+            Element titleLink = resultItem.selectFirst("span.entity-result__title-text > a");
+            Element nameSpan = titleLink == null ? null : titleLink.selectFirst("span[aria-hidden]");
+            Element jobSpan = resultItem.selectFirst(".entity-result__primary-subtitle");
+            if (nameSpan == null || jobSpan == null) {
+                continue;
+            }
+            try {
+                leads.add(normalizer.toLead(company, titleLink.attr("href"), nameSpan.text(), jobSpan.text()));
+            } catch (Exception e) {
+                // like in the scraper, leads whose name cannot be split up are skipped
+            }
+        }
+        return leads;
+    }
+
+    public List<Company> extractCompanies(Document doc) {
+        List<Company> companies = new ArrayList<>();
+        for (Element resultItem : doc.select(".search-results-container li.reusable-search__result-container")) {
+            Element titleSpan = resultItem.selectFirst("span.entity-result__title-text");
+            Element link = titleSpan == null ? null : titleSpan.selectFirst("a");
+            if (link == null) {
+                continue;
+            }
+            Company company = new Company();
+            company.setName(titleSpan.text().trim());
+            company.setLink(link.attr("href") + "about");
+            companies.add(company);
+        }
+        return companies;
+    }
+
+    /**
+     * Returns null if the page does not contain an experience section.
+     */
+    public List<String> extractJobTitles(Document doc, int maxNumJobs) {
+        Element experience = doc.getElementById("experience");
+        if (experience == null || !experience.parent().tagName().equalsIgnoreCase("section")) {
+            return null;
+        }
+        Element experienceSection = experience.parent();
+        return extractJobTitles(experienceSection.select("> div.pvs-list__outer-container > ul.pvs-list > li"), maxNumJobs);
+    }
+
+    /**
+     * Like {@link #extractJobTitles(Document, int)}, but for the experience
+     * details page of a profile.
+     */
+    public List<String> extractExperienceDetails(Document doc, int maxNumJobs) {
+        Elements stations = doc.select("main section .scaffold-finite-scroll__content > ul.pvs-list > li");
+        if (stations.isEmpty()) {
+            return null;
+        }
+        return extractJobTitles(stations, maxNumJobs);
+    }
+
+    private List<String> extractJobTitles(Elements stations, int maxNumJobs) {
+        List<String> jobDescriptions = new ArrayList<>();
+        jobs: for (Element station : stations) {
+            if (jobDescriptions.size() >= maxNumJobs) {
+                break;
+            }
+            List<Element> subDivs = station.select("> div > div:nth-child(2) > div");
+            if (subDivs.size() == 1) {
+                // normal station
+                Element jobTitle = station.selectFirst("> div > div > div > div > div > span > span[aria-hidden]");
+                if (jobTitle != null) {
+                    jobDescriptions.add(jobTitle.text().trim());
+                }
+            } else if (subDivs.size() > 1) {
+                // station with substations
+                for (Element jobTitle : subDivs.get(1)
+                        .select("> ul.pvs-list > li > div > div > div > a > div > span > span[aria-hidden]")) {
+                    if (jobDescriptions.size() >= maxNumJobs) {
+                        break jobs;
+                    }
+                    jobDescriptions.add(jobTitle.text().trim());
+                }
+            }
+        }
+        return jobDescriptions;
+    }
+
+    /**
+     * Fills the about page information into the given company. Returns false if
+     * the page does not contain the info table.
+     */
+    public boolean extractCompanyInfo(Document doc, Company company) throws MalformedURLException {
+        Element infoTable = doc.selectFirst("dl.overflow-hidden");
+        if (infoTable == null) {
+            return false;
+        }
+        String currentHeading = "";
+        for (Element info : infoTable.children()) {
+            if (info.tagName().equalsIgnoreCase("dt")) {
+                currentHeading = info.text().trim();
+            } else {
+                if ("Branche".equalsIgnoreCase(currentHeading)) {
+                    company.setIndustry(info.text().trim());
+                }
+                if ("Größe".equalsIgnoreCase(currentHeading)) {
+                    String text = info.text().trim();
+                    if (text.contains(" auf LinkedIn")) {
+                        company.setEmployeesOnLinkedIn(text.substring(0, text.indexOf(" auf LinkedIn")));
+                    } else {
+                        company.setSize(text);
+                    }
+                }
+                if ("Website".equalsIgnoreCase(currentHeading)) {
+                    Element link = info.selectFirst("a");
+                    if (link != null) {
+                        company.setDomain(slds.getDomain(link.attr("href").trim()));
+                    }
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,177 @@
+package io.qbilon.linkedin.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Fetches server rendered pages without a browser. It reuses the cookies of a
+ * logged in browser context (Playwright storage state), so the requests are
+ * authenticated as well. The caller is responsible for checking whether the
+ * returned html contains everything it needs and for falling back to the
+ * browser otherwise.
+ */
+public class HttpFetcher {
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/110.0.0.0 Safari/537.36";
+
+    private HttpClient client;
+    private volatile List<Cookie> cookies;
+    private RateBudget budget;
+    private AtomicInteger fetched = new AtomicInteger();
+    private AtomicInteger failed = new AtomicInteger();
+    private AtomicInteger fallbacks = new AtomicInteger();
+
+    public HttpFetcher(List<Cookie> cookies) {
+        this.cookies = cookies;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                // a redirect usually means we are not logged in, the caller should fall back to the browser
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * Creates a fetcher from the json returned by
+     * {@code BrowserContext.storageState()}. If a budget is given, every request
+     * waits for it like a navigation of the account.
+     */
+    public static HttpFetcher fromStorageState(String storageState, RateBudget budget) {
+        HttpFetcher fetcher = new HttpFetcher(parseCookies(storageState));
+        fetcher.budget = budget;
+        return fetcher;
+    }
+
+    /**
+     * A fetcher with the cookies of another session, e.g. of a further account.
+     * It shares the client and the statistics with this one.
+     */
+    public HttpFetcher forSession(String storageState, RateBudget budget) {
+        HttpFetcher fetcher = new HttpFetcher(client, parseCookies(storageState));
+        fetcher.budget = budget;
+        fetcher.fetched = fetched;
+        fetcher.failed = failed;
+        fetcher.fallbacks = fallbacks;
+        return fetcher;
+    }
+
+    /**
+     * Replaces the cookies, e.g. after the session logged in again and the old
+     * ones are not accepted anymore.
+     */
+    public void updateSession(String storageState) {
+        cookies = parseCookies(storageState);
+    }
+
+    private HttpFetcher(HttpClient client, List<Cookie> cookies) {
+        this.client = client;
+        this.cookies = cookies;
+    }
+
+    private static List<Cookie> parseCookies(String storageState) {
+        List<Cookie> cookies = new ArrayList<>();
+        JsonObject state = JsonParser.parseString(storageState).getAsJsonObject();
+        if (state.has("cookies")) {
+            for (JsonElement element : state.getAsJsonArray("cookies")) {
+                JsonObject cookie = element.getAsJsonObject();
+                cookies.add(new Cookie(
+                        cookie.get("name").getAsString(),
+                        cookie.get("value").getAsString(),
+                        cookie.get("domain").getAsString(),
+                        cookie.has("path") ? cookie.get("path").getAsString() : "/",
+                        cookie.has("expires") ? cookie.get("expires").getAsDouble() : -1,
+                        cookie.has("secure") && cookie.get("secure").getAsBoolean()));
+            }
+        }
+        return cookies;
+    }
+
+    /**
+     * Returns the html of the given page, or null if the server did not answer
+     * with 200, e.g., because it redirected us to the login.
+     */
+    public String fetch(String url) throws IOException, InterruptedException {
+        if (budget != null) {
+            budget.acquire();
+        }
+        URI uri = URI.create(url);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(10))
+                .header("User-Agent", USER_AGENT)
+                .header("Accept", "text/html,application/xhtml+xml")
+                // the extraction relies on the german labels
+                .header("Accept-Language", "de-DE,de;q=0.9");
+        String cookieHeader = cookieHeader(uri);
+        if (!cookieHeader.isEmpty()) {
+            request.header("Cookie", cookieHeader);
+        }
+        HttpResponse<String> response = client.send(request.GET().build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            failed.incrementAndGet();
+            return null;
+        }
+        fetched.incrementAndGet();
+        return response.body();
+    }
+
+    /**
+     * To be called whenever a fetched page was not usable and the browser had to
+     * be used instead.
+     */
+    public void markFallback() {
+        fallbacks.incrementAndGet();
+    }
+
+    public String stats() {
+        return fetched.get() + " pages fetched, " + failed.get() + " failed requests, " + fallbacks.get()
+                + " fallbacks to the browser";
+    }
+
+    private String cookieHeader(URI uri) {
+        double now = System.currentTimeMillis() / 1000.0;
+        String path = uri.getPath() == null || uri.getPath().isEmpty() ? "/" : uri.getPath();
+        return cookies.stream()
+                .filter(cookie -> cookie.matchesDomain(uri.getHost()))
+                .filter(cookie -> path.startsWith(cookie.path))
+                .filter(cookie -> !cookie.secure || "https".equalsIgnoreCase(uri.getScheme()))
+                .filter(cookie -> cookie.expires < 0 || cookie.expires > now)
+                .map(cookie -> cookie.name + "=" + cookie.value)
+                .collect(Collectors.joining("; "));
+    }
+
+    public static class Cookie {
+        private String name;
+        private String value;
+        private String domain;
+        private String path;
+        // seconds since epoch, -1 for session cookies
+        private double expires;
+        private boolean secure;
+
+        public Cookie(String name, String value, String domain, String path, double expires, boolean secure) {
+            this.name = name;
+            this.value = value;
+            this.domain = domain;
+            this.path = path;
+            this.expires = expires;
+            this.secure = secure;
+        }
+
+        boolean matchesDomain(String host) {
+            String cookieDomain = domain.startsWith(".") ? domain.substring(1) : domain;
+            return host.equalsIgnoreCase(cookieDomain) || host.toLowerCase().endsWith("." + cookieDomain.toLowerCase());
+        }
+    }
+}
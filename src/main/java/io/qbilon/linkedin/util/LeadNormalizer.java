@@ -0,0 +1,144 @@
+package io.qbilon.linkedin.util;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.qbilon.linkedin.model.Company;
+import io.qbilon.linkedin.model.Lead;
+
+/**
+ * Turns the raw data of a search result into a lead, i.e., cleans up the name,
+ * strips the company from the job title and derives the email.
+ */
+public class LeadNormalizer {
+
+    private SpecialChars specialChars = new SpecialChars();
+    private RemovableNameSegments removableSegments = new RemovableNameSegments();
+    private JobDescriptors jobDescriptors = new JobDescriptors();
+
+    public Lead toLead(Company company, String profileLink, String name, String jobTitle) {
+        Lead lead = new Lead();
+        lead.setProfileLink(profileLink.contains("?") ? profileLink.substring(0, profileLink.indexOf("?")) : profileLink);
+        setFirstAndLastName(lead, name.trim());
+        lead.setJobTitle(getJobTitle(company, jobTitle.trim()));
+        lead.setEmail(getEmail(lead, company.getDomain()));
+        lead.setIndustry(company.getIndustry());
+        return lead;
+    }
+
+    /**
+     * Sets the current and up to three previous job titles, most recent first.
+     */
+    public void applyJobDescriptions(Lead lead, List<String> jobDescriptions) {
+        if (jobDescriptions.size() >= 1) {
+            if (!jobDescriptions.get(0).equals(lead.getJobTitle())) {
+                lead.setJobTitle(jobDescriptions.get(0));
+            }
+        }
+        if (jobDescriptions.size() >= 2) {
+            lead.setPreviousJobTitle1(jobDescriptions.get(1));
+        }
+        if (jobDescriptions.size() >= 3) {
+            lead.setPreviousJobTitle2(jobDescriptions.get(2));
+        }
+        if (jobDescriptions.size() >= 4) {
+            lead.setPreviousJobTitle3(jobDescriptions.get(3));
+        }
+    }
+
+    public String getJobTitle(Company company, String jobTitle) {
+        // remove often used "at XXX" job title phrases
+        for (String descriptor : jobDescriptors.getJobDescriptors(company.getName())) {
+            if (jobTitle.contains(descriptor)) {
+                return jobTitle.replace(descriptor, "");
+            }
+        }
+        return jobTitle;
+    }
+
+    public String getEmail(Lead lead, String domain ) {
+        String firstName = lead.getFirstName().toLowerCase().replace(".", "").replace(" ", ".");
+        String lastName = lead.getLastName().toLowerCase().replace(".", "").replace(" ", ".");
+        firstName = firstName.replace("-", ".").replace("'", ".");
+        lastName = lastName.replace("-", ".").replace("'", ".");
+        return firstName + "." + lastName + "@" + domain;
+    }
+
+    public void setFirstAndLastName(Lead lead, String name) {
+        String nameToLower = name.toLowerCase();
+        // some names contain a ',' and then some stuff after it (titles usually) that we can discard
+        if(nameToLower.contains(",")) {
+            nameToLower = nameToLower.substring(0, nameToLower.indexOf(",")).trim();
+        }
+        // some names contain stuff in parenthesis, also mostly titles
+        nameToLower = filterTextBetweenParenthesis(nameToLower).trim();
+        // Some special people think that emojis should be part of your name Linkedin -.-
+        nameToLower = filterEmoji(nameToLower).trim();
+        // replace most common special characters
+        for (String special : specialChars.specials()) {
+            nameToLower = nameToLower.replace(special, specialChars.replacementFor(special)).trim();
+        }
+        // replace unwanted name segments
+        for (String removableSegment : removableSegments.removableSegments()) {
+            nameToLower = nameToLower.replace(removableSegment, "").trim();
+        }
+
+        // now split it into first name and last name
+        String firstName = nameToLower.substring(0, nameToLower.lastIndexOf(" ")).trim();
+        String lastName = nameToLower.substring(nameToLower.lastIndexOf(" ") + 1).trim();
+        lead.setFirstName(capitalizeSpecialCases(firstName).trim());
+        lead.setLastName(capitalizeSpecialCases(lastName).trim());
+    }
+
+    private String capitalizeSpecialCases(String name) {
+        // the first name might currently be in the format "aaa-bbb ccc"
+        // result should be Aaa-Bbb Ccc
+        String[] segments = name.split(" ");
+        for (int j = 0; j < segments.length; j++) {
+            String segment = segments[j];
+            if(segment.contains("-")) {
+                String[] subSegments = segment.split("-");
+                for (int i = 0; i < subSegments.length; i++) {
+                    subSegments[i] = capitalize(subSegments[i]);
+                }
+                segments[j] = String.join("-", subSegments);
+            } else {
+                segments[j] = capitalize(segment);
+            }
+        }
+        return String.join(" ", segments);
+    }
+
+    private String filterEmoji(String source) {
+        String result = source;
+        if (source != null) {
+            Pattern emoji = Pattern.compile("[\\x{10000}-\\x{10FFFF}]",
+                    Pattern.UNICODE_CASE | Pattern.CASE_INSENSITIVE);
+            Matcher emojiMatcher = emoji.matcher(source);
+            if (emojiMatcher.find()) {
+                result = emojiMatcher.replaceAll("");
+            }
+        }
+        return result;
+    }
+
+    private String filterTextBetweenParenthesis(String source) {
+        if (source != null) {
+            Pattern parenthesis = Pattern.compile("\\(.*?\\)");
+            Matcher parenthesisMatcher = parenthesis.matcher(source);
+            if (parenthesisMatcher.find()) {
+                source = parenthesisMatcher.replaceAll("");
+                return source;
+            }
+            return source;
+        }
+        return source;
+    }
+
+    private String capitalize(String str) {
+        if (str == null || str.length() <= 1)
+            return str;
+        return str.substring(0, 1).toUpperCase() + str.substring(1);
+    }
+}
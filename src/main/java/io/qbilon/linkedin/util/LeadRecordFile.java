@@ -0,0 +1,148 @@
+package io.qbilon.linkedin.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import io.qbilon.linkedin.model.Lead;
+
+/**
+ * Append-only binary file used to hand over leads from the raw to the
+ * augmentation phase. Each record is length prefixed, so a record that was
+ * only partially written (e.g. because the scraper crashed) is simply ignored
+ * when reading.
+ *
+ * Leads may be appended several times, when reading the file the last record
+ * for an email wins.
+ */
+public class LeadRecordFile {
+
+    private static final int MAGIC = 0x514C4431; // "QLD1"
+    private static final int FIELD_COUNT = 12;
+
+    private LeadRecordFile() {
+    }
+
+    public static Writer create(Path path) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        out.writeInt(MAGIC);
+        return new Writer(out);
+    }
+
+    /**
+     * Streams all completely written leads of the given file to the consumer.
+     * Returns the number of leads read.
+     */
+    public static int read(Path path, Consumer<Lead> consumer) throws IOException {
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(path + " is not a lead record file");
+            }
+            byte[] record = new byte[1024];
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                    if (length > record.length) {
+                        record = new byte[length];
+                    }
+                    in.readFully(record, 0, length);
+                } catch (EOFException e) {
+                    // end of file or a truncated last record
+                    break;
+                }
+                consumer.accept(decode(new DataInputStream(new ByteArrayInputStream(record, 0, length))));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Lead decode(DataInputStream in) throws IOException {
+        String[] fields = new String[FIELD_COUNT];
+        int present = in.readUnsignedShort();
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if ((present & (1 << i)) != 0) {
+                fields[i] = in.readUTF();
+            }
+        }
+        Lead lead = new Lead();
+        lead.setFirstName(fields[0]);
+        lead.setLastName(fields[1]);
+        lead.setEmail(fields[2]);
+        lead.setJobTitle(fields[3]);
+        lead.setPreviousJobTitle1(fields[4]);
+        lead.setPreviousJobTitle2(fields[5]);
+        lead.setPreviousJobTitle3(fields[6]);
+        lead.setProfileLink(fields[7]);
+        lead.setIndustry(fields[8]);
+        lead.setLifecyclePhase(fields[9]);
+        lead.setLeadStatus(fields[10]);
+        lead.setUser(fields[11]);
+        return lead;
+    }
+
+    public static class Writer implements AutoCloseable {
+        private DataOutputStream out;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        private DataOutputStream record = new DataOutputStream(buffer);
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        public void append(Lead lead) throws IOException {
+            String[] fields = {
+                    lead.getFirstName(),
+                    lead.getLastName(),
+                    lead.getEmail(),
+                    lead.getJobTitle(),
+                    lead.getPreviousJobTitle1(),
+                    lead.getPreviousJobTitle2(),
+                    lead.getPreviousJobTitle3(),
+                    lead.getProfileLink(),
+                    lead.getIndustry(),
+                    lead.getLifecyclePhase(),
+                    lead.getLeadStatus(),
+                    lead.getUser() };
+            int present = 0;
+            for (int i = 0; i < FIELD_COUNT; i++) {
+                if (fields[i] != null) {
+                    present |= 1 << i;
+                }
+            }
+            buffer.reset();
+            record.writeShort(present);
+            for (String field : fields) {
+                if (field != null) {
+                    record.writeUTF(field);
+                }
+            }
+            out.writeInt(buffer.size());
+            buffer.writeTo(out);
+        }
+
+        /**
+         * Hands everything appended so far to the operating system, e.g. after
+         * each company, so it survives a crash of the scraper. It is not synced
+         * to the disk.
+         */
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
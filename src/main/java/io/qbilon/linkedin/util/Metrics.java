@@ -0,0 +1,376 @@
+package io.qbilon.linkedin.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.GsonBuilder;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Counters and timers of a scraper run. Everything is labeled with the
+ * current phase of the {@link ScrapeContext} plus the labels given by the
+ * caller, so we can see where a run spends its time.
+ *
+ * The metrics can be served in the Prometheus text format and/or dumped
+ * periodically to a json file.
+ *
+ * Page latencies are additionally kept in a {@link LatencyHistogram} per page
+ * type and step (navigate, ready, extract), so we get percentiles instead of
+ * averages.
+ */
+public class Metrics {
+
+    private static final Logger LOG = LogManager.getLogger(Metrics.class);
+    private static final String PREFIX = "linkedin_scraper_";
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private Map<Key, LongAdder> counters = new ConcurrentHashMap<>();
+    private Map<Key, Timer> timers = new ConcurrentHashMap<>();
+    private Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ScheduledExecutorService dumper;
+    private Path dumpFile;
+    private Path latencyFile;
+
+    public void increment(String name, String... labels) {
+        add(name, 1, labels);
+    }
+
+    public void add(String name, long amount, String... labels) {
+        counters.computeIfAbsent(new Key(name, labels), key -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * Records the time passed since the given {@link System#nanoTime()}.
+     */
+    public void recordSince(String name, long startNanos, String... labels) {
+        record(name, System.nanoTime() - startNanos, labels);
+    }
+
+    public void record(String name, long nanos, String... labels) {
+        timers.computeIfAbsent(new Key(name, labels), key -> new Timer()).record(nanos);
+    }
+
+    /**
+     * Records the time passed since the given {@link System#nanoTime()} as a
+     * timer and in the latency histogram of the page type and step.
+     */
+    public void recordLatency(PageType type, String step, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        record(step, nanos, "type", type.name());
+        latencies.computeIfAbsent(type.name() + "/" + step, key -> new LatencyHistogram()).recordNanos(nanos);
+    }
+
+    /**
+     * Returns the histogram of the given page type and step, e.g., to derive
+     * timeouts from it. Returns an empty histogram if nothing was recorded yet.
+     */
+    public LatencyHistogram latency(PageType type, String step) {
+        return latencies.getOrDefault(type.name() + "/" + step, new LatencyHistogram());
+    }
+
+    public void serve(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor(daemonThreads("metrics-server")));
+        server.start();
+    }
+
+    public void dumpPeriodically(Path file, Duration interval) {
+        dumpFile = file;
+        dumper = Executors.newSingleThreadScheduledExecutor(daemonThreads("metrics-dump"));
+        dumper.scheduleAtFixedRate(this::dump, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void writeLatenciesOnClose(Path file) {
+        latencyFile = file;
+    }
+
+    /**
+     * Stops serving and dumping. The metrics file is written a last time.
+     */
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (dumper != null) {
+            dumper.shutdown();
+            dump();
+        }
+        if (latencyFile != null) {
+            try {
+                Files.createDirectories(latencyFile.getParent());
+                Files.writeString(latencyFile, latenciesAsCsv());
+            } catch (IOException e) {
+                LOG.warn("WARNING: Could not write the latencies to {}", latencyFile, e);
+            }
+        }
+    }
+
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        Map<String, List<Map.Entry<Key, LongAdder>>> counterFamilies = new TreeMap<>();
+        counters.entrySet().forEach(entry -> counterFamilies
+                .computeIfAbsent(entry.getKey().name, name -> new ArrayList<>()).add(entry));
+        for (Map.Entry<String, List<Map.Entry<Key, LongAdder>>> family : counterFamilies.entrySet()) {
+            String name = PREFIX + family.getKey() + "_total";
+            sb.append("# TYPE ").append(name).append(" counter\n");
+            for (Map.Entry<Key, LongAdder> entry : family.getValue()) {
+                sb.append(name).append(entry.getKey().labelString()).append(" ").append(entry.getValue().sum())
+                        .append("\n");
+            }
+        }
+        Map<String, List<Map.Entry<Key, Timer>>> timerFamilies = new TreeMap<>();
+        timers.entrySet().forEach(entry -> timerFamilies
+                .computeIfAbsent(entry.getKey().name, name -> new ArrayList<>()).add(entry));
+        for (Map.Entry<String, List<Map.Entry<Key, Timer>>> family : timerFamilies.entrySet()) {
+            String name = PREFIX + family.getKey() + "_seconds";
+            sb.append("# TYPE ").append(name).append(" summary\n");
+            for (Map.Entry<Key, Timer> entry : family.getValue()) {
+                String labels = entry.getKey().labelString();
+                Timer timer = entry.getValue();
+                sb.append(name).append("_count").append(labels).append(" ").append(timer.count.sum()).append("\n");
+                sb.append(name).append("_sum").append(labels).append(" ").append(seconds(timer.sum.sum()))
+                        .append("\n");
+                sb.append(name).append("_max").append(labels).append(" ").append(seconds(timer.max.get()))
+                        .append("\n");
+            }
+        }
+        if (!latencies.isEmpty()) {
+            String name = PREFIX + "page_latency_seconds";
+            sb.append("# TYPE ").append(name).append(" summary\n");
+            for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+                String[] typeAndStep = entry.getKey().split("/");
+                String labels = "type=\"" + typeAndStep[0] + "\",step=\"" + typeAndStep[1] + "\"";
+                LatencyHistogram histogram = entry.getValue();
+                for (double percentile : PERCENTILES) {
+                    sb.append(name).append("{").append(labels).append(",quantile=\"").append(percentile / 100)
+                            .append("\"} ").append(histogram.percentile(percentile) / 1e6).append("\n");
+                }
+                sb.append(name).append("_count{").append(labels).append("} ").append(histogram.count()).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    public String toJson() {
+        List<Map<String, Object>> counterList = new ArrayList<>();
+        for (Map.Entry<Key, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            Map<String, Object> counter = new LinkedHashMap<>();
+            counter.put("name", entry.getKey().name);
+            counter.put("labels", entry.getKey().labels);
+            counter.put("value", entry.getValue().sum());
+            counterList.add(counter);
+        }
+        List<Map<String, Object>> timerList = new ArrayList<>();
+        for (Map.Entry<Key, Timer> entry : new TreeMap<>(timers).entrySet()) {
+            Map<String, Object> timer = new LinkedHashMap<>();
+            timer.put("name", entry.getKey().name);
+            timer.put("labels", entry.getKey().labels);
+            timer.put("count", entry.getValue().count.sum());
+            timer.put("sumSeconds", seconds(entry.getValue().sum.sum()));
+            timer.put("maxSeconds", seconds(entry.getValue().max.get()));
+            timerList.add(timer);
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("timestamp", System.currentTimeMillis());
+        json.put("counters", counterList);
+        json.put("timers", timerList);
+        List<Map<String, Object>> latencyList = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+            Map<String, Object> latency = new LinkedHashMap<>();
+            String[] typeAndStep = entry.getKey().split("/");
+            latency.put("type", typeAndStep[0]);
+            latency.put("step", typeAndStep[1]);
+            latency.put("count", entry.getValue().count());
+            for (double percentile : PERCENTILES) {
+                latency.put("p" + formatPercentile(percentile) + "Millis", entry.getValue().percentile(percentile) / 1e3);
+            }
+            latency.put("maxMillis", entry.getValue().max() / 1e3);
+            latencyList.add(latency);
+        }
+        json.put("latencies", latencyList);
+        return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+    }
+
+    /**
+     * A human readable overview of all timers, printed at the end of a run.
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-60s %8s %12s %10s %10s%n", "timer", "count", "total [s]", "avg [ms]", "max [ms]"));
+        for (Map.Entry<Key, Timer> entry : new TreeMap<>(timers).entrySet()) {
+            Timer timer = entry.getValue();
+            long count = timer.count.sum();
+            long sum = timer.sum.sum();
+            sb.append(String.format("%-60s %8d %12.1f %10.1f %10.1f%n", entry.getKey(), count, sum / 1e9,
+                    count == 0 ? 0.0 : sum / 1e6 / count, timer.max.get() / 1e6));
+        }
+        for (Map.Entry<Key, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            sb.append(String.format("%-60s %8d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The percentiles of all page latencies in milliseconds, printed at the end
+     * of a run.
+     */
+    public String latencyTable() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-10s %-10s %8s %10s", "type", "step", "count", "min"));
+        for (double percentile : PERCENTILES) {
+            sb.append(String.format(" %10s", "p" + formatPercentile(percentile)));
+        }
+        sb.append(String.format(" %10s %10s%n", "max", "mean"));
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+            String[] typeAndStep = entry.getKey().split("/");
+            LatencyHistogram histogram = entry.getValue();
+            sb.append(String.format("%-10s %-10s %8d %10.1f", typeAndStep[0], typeAndStep[1], histogram.count(),
+                    histogram.min() / 1e3));
+            for (double percentile : PERCENTILES) {
+                sb.append(String.format(" %10.1f", histogram.percentile(percentile) / 1e3));
+            }
+            sb.append(String.format(" %10.1f %10.1f%n", histogram.max() / 1e3, histogram.mean() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    private String latenciesAsCsv() {
+        StringBuilder sb = new StringBuilder("type,step,count,min_ms");
+        for (double percentile : PERCENTILES) {
+            sb.append(",p").append(formatPercentile(percentile)).append("_ms");
+        }
+        sb.append(",max_ms,mean_ms\n");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            sb.append(entry.getKey().replace('/', ',')).append(",").append(histogram.count()).append(",")
+                    .append(histogram.min() / 1e3);
+            for (double percentile : PERCENTILES) {
+                sb.append(",").append(histogram.percentile(percentile) / 1e3);
+            }
+            sb.append(",").append(histogram.max() / 1e3).append(",").append(histogram.mean() / 1e3).append("\n");
+        }
+        return sb.toString();
+    }
+
+    // 99.9 -> 999, 50 -> 50
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile)
+                : String.valueOf(percentile).replace(".", "");
+    }
+
+    private void dump() {
+        try {
+            Files.createDirectories(dumpFile.getParent());
+            Path tmp = dumpFile.resolveSibling(dumpFile.getFileName() + ".tmp");
+            Files.writeString(tmp, toJson());
+            Files.move(tmp, dumpFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("WARNING: Could not dump the metrics to {}", dumpFile, e);
+        }
+    }
+
+    private double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class Timer {
+        private LongAdder count = new LongAdder();
+        private LongAdder sum = new LongAdder();
+        private AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            sum.add(nanos);
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    private static class Key implements Comparable<Key> {
+        private String name;
+        private Map<String, String> labels = new TreeMap<>();
+        private String labelString;
+        private String id;
+
+        Key(String name, String... labels) {
+            this.name = name;
+            String phase = ScrapeContext.phase();
+            if (phase != null) {
+                this.labels.put("phase", phase);
+            }
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                this.labels.put(labels[i], labels[i + 1]);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, String> label : this.labels.entrySet()) {
+                sb.append(sb.length() == 0 ? "{" : ",");
+                sb.append(label.getKey()).append("=\"")
+                        .append(String.valueOf(label.getValue()).replace("\\", "\\\\").replace("\"", "\\\""))
+                        .append("\"");
+            }
+            this.labelString = sb.length() == 0 ? "" : sb.append("}").toString();
+            this.id = name + labelString;
+        }
+
+        String labelString() {
+            return labelString;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            return toString().compareTo(other.toString());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && toString().equals(o.toString());
+        }
+
+        @Override
+        public int hashCode() {
+            return toString().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.qbilon.linkedin.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import picocli.CommandLine.Option;
+
+/**
+ * Options shared by all scrapers to expose what a run is doing and to stop it
+ * when it is clearly failing.
+ */
+public class MonitoringOptions {
+
+    private static final Logger LOG = LogManager.getLogger(MonitoringOptions.class);
+
+    @Option(names = { "--metrics-port" }, description = "An optional port on which metrics are served in the Prometheus text format under /metrics")
+    private Integer metricsPort;
+    @Option(names = { "--metrics-file" }, description = "An optional json file to which the metrics are dumped periodically. Use it like this: --metrics-file path/to/metrics.json")
+    private File metricsFile;
+    @Option(names = { "--metrics-interval" }, description = "The interval in seconds in which the metrics file is written (default is 60)", defaultValue = "60")
+    private int metricsInterval;
+    @Option(names = { "--latency-file" }, description = "An optional csv file to which the latency percentiles per page type and step are written at the end of the run. Use it like this: --latency-file path/to/latencies.csv")
+    private File latencyFile;
+    @Option(names = { "--navigation-timing" }, description = "If toggled the browser side navigation timings are read after every navigation, the resource timings before the page leaves the document, and both are reported per page type at the end of the run. For page types that do not wait for the load event (see --wait-until) it also records how much earlier they were ready (load_saved)")
+    private boolean navigationTiming;
+    @Option(names = { "--fail-fast-rate" }, description = "The failure rate (0-1) over the last operations of a phase at which the run is aborted, e.g., because a selector broke. 0 disables it (default is 0.9)", defaultValue = "0.9")
+    private double failFastRate;
+    @Option(names = { "--fail-fast-window" }, description = "The number of most recent operations of a phase the failure rate is computed on (default is 50)", defaultValue = "50")
+    private int failFastWindow;
+
+    public Metrics createMetrics() {
+        Metrics metrics = new Metrics();
+        if (metricsPort != null) {
+            try {
+                metrics.serve(metricsPort);
+            } catch (IOException e) {
+                LOG.warn("WARNING: Could not serve metrics on port {}: {}", metricsPort, e.getMessage());
+            }
+        }
+        if (metricsFile != null) {
+            metrics.dumpPeriodically(metricsFile.toPath().toAbsolutePath(), Duration.ofSeconds(metricsInterval));
+        }
+        if (latencyFile != null) {
+            metrics.writeLatenciesOnClose(latencyFile.toPath().toAbsolutePath());
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns null if the navigation timings are not requested.
+     */
+    public NavigationTimings createNavigationTimings(Metrics metrics) {
+        return navigationTiming ? new NavigationTimings(metrics) : null;
+    }
+
+    public ErrorCollector createErrorCollector() {
+        return new ErrorCollector(failFastRate, failFastWindow);
+    }
+
+    public String describe() {
+        return "metricsPort = " + metricsPort + ", metricsFile = "
+                + (metricsFile == null ? null : metricsFile.getAbsolutePath()) + ", metricsInterval = " + metricsInterval + ", latencyFile = "
+                + (latencyFile == null ? null : latencyFile.getAbsolutePath()) + ", navigationTiming = "
+                + navigationTiming + ", failFastRate = " + failFastRate + ", failFastWindow = " + failFastWindow;
+    }
+}
@@ -0,0 +1,211 @@
+package io.qbilon.linkedin.util;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.PlaywrightException;
+
+/**
+ * Reads the Navigation Timing and Resource Timing entries of the browser and
+ * aggregates them per page type. Unlike our own timers this tells us whether a
+ * page is slow because of DNS, the server (time to first byte), the amount of
+ * transferred data or the rendering on the client.
+ *
+ * The navigation timings are read right after a navigation. Most navigations
+ * return before the page loaded its resources, so the resource timings are
+ * read just before the page leaves the document instead.
+ */
+public class NavigationTimings {
+
+    // marks the document, so its resources are attributed to the page type later on
+    private static final String SCRIPT = "type => {\n"
+            + "  const nav = performance.getEntriesByType('navigation')[0];\n"
+            + "  if (!nav) { return null; }\n"
+            + "  performance.setResourceTimingBufferSize(1000);\n"
+            + "  performance.mark('timings:' + type);\n"
+            + "  return {\n"
+            + "    dns: nav.domainLookupEnd - nav.domainLookupStart,\n"
+            + "    connect: nav.connectEnd - nav.connectStart,\n"
+            + "    ttfb: nav.responseStart - nav.requestStart,\n"
+            + "    download: nav.responseEnd - nav.responseStart,\n"
+            + "    domInteractive: nav.domInteractive - nav.startTime,\n"
+            + "    domContentLoaded: nav.domContentLoadedEventEnd > 0 ? nav.domContentLoadedEventEnd - nav.startTime : 0,\n"
+            + "    load: nav.loadEventEnd > 0 ? nav.loadEventEnd - nav.startTime : 0,\n"
+            + "    documentTransferSize: nav.transferSize || 0\n"
+            + "  };\n"
+            + "}";
+    // the resources of the current document and the time between its ready
+    // mark and its load event, in one round trip to the browser
+    private static final String LEAVE_SCRIPT = "() => {\n"
+            + "  const marks = performance.getEntriesByType('mark');\n"
+            + "  const collected = marks.find(mark => mark.name.startsWith('timings:'));\n"
+            + "  if (!collected) { return null; }\n"
+            + "  const resources = {};\n"
+            + "  for (const entry of performance.getEntriesByType('resource')) {\n"
+            + "    const kind = entry.initiatorType || 'other';\n"
+            + "    const sum = resources[kind] || (resources[kind] = { count: 0, transferSize: 0 });\n"
+            + "    sum.count++;\n"
+            + "    sum.transferSize += entry.transferSize || 0;\n"
+            + "  }\n"
+            + "  const ready = marks.find(mark => mark.name.startsWith('ready:'));\n"
+            + "  const nav = performance.getEntriesByType('navigation')[0];\n"
+            + "  const end = nav && nav.loadEventEnd > 0 ? nav.loadEventEnd : performance.now();\n"
+            + "  return { type: collected.name.substring(8), resources: resources, saved: ready ? end - ready.startTime : null };\n"
+            + "}";
+    private static final String[] PHASES = { "dns", "connect", "ttfb", "download", "domInteractive",
+            "domContentLoaded", "load" };
+    private static final Set<String> EVENT_PHASES = Set.of("domContentLoaded", "load");
+
+    private Metrics metrics;
+    private Map<PageType, Aggregate> aggregates = new EnumMap<>(PageType.class);
+    private int failures = 0;
+
+    public NavigationTimings(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Reads the navigation timings of the current document of the page.
+     * Failures are only counted, the timings must never break a scrape.
+     */
+    @SuppressWarnings("unchecked")
+    public void collect(Page page, PageType type) {
+        Map<String, Object> timing;
+        try {
+            timing = (Map<String, Object>) page.evaluate(SCRIPT, type.name());
+        } catch (PlaywrightException e) {
+            synchronized (this) {
+                failures++;
+            }
+            return;
+        }
+        if (timing == null) {
+            return;
+        }
+        long documentBytes = asLong(timing.get("documentTransferSize"));
+        metrics.add("transfer_bytes", documentBytes, "type", type.name(), "resource", "document");
+        synchronized (this) {
+            Aggregate aggregate = aggregates.computeIfAbsent(type, key -> new Aggregate());
+            aggregate.count++;
+            for (String phase : PHASES) {
+                double millis = asDouble(timing.get(phase));
+                // navigations may return before these events, see Util.setWaitUntil
+                if (millis > 0 || !EVENT_PHASES.contains(phase)) {
+                    aggregate.millis.merge(phase, millis, Double::sum);
+                    aggregate.samples.merge(phase, 1, Integer::sum);
+                }
+            }
+            aggregate.bytes.merge("document", documentBytes, Long::sum);
+        }
+    }
+
+    /**
+     * Marks the current document of the page as ready, for page types whose
+     * navigation returns before the load event.
+     */
+    public void markReady(Page page, PageType type) {
+        try {
+            page.evaluate("type => performance.mark('ready:' + type)", type.name());
+        } catch (PlaywrightException e) {
+            // only needed for the load_saved metric
+        }
+    }
+
+    /**
+     * Before the page leaves a document read by {@link #collect}, reads the
+     * resources it transferred so far. If the document was marked ready, also
+     * records how much earlier than its load event that was. If the document
+     * did not even finish loading while we used it, the whole time since it
+     * was ready counts.
+     */
+    @SuppressWarnings("unchecked")
+    public void collectBeforeLeaving(Page page) {
+        Map<String, Object> leaving;
+        try {
+            leaving = (Map<String, Object>) page.evaluate(LEAVE_SCRIPT);
+        } catch (PlaywrightException e) {
+            // e.g. the page was closed
+            synchronized (this) {
+                failures++;
+            }
+            return;
+        }
+        if (leaving == null) {
+            return;
+        }
+        String type = (String) leaving.get("type");
+        if (leaving.get("saved") != null) {
+            double millis = Math.max(0, asDouble(leaving.get("saved")));
+            metrics.record("load_saved", (long) (millis * 1_000_000), "type", type);
+        }
+        Map<String, Object> resources = (Map<String, Object>) leaving.getOrDefault("resources", Map.of());
+        synchronized (this) {
+            Aggregate aggregate = aggregates.computeIfAbsent(PageType.valueOf(type), key -> new Aggregate());
+            for (Map.Entry<String, Object> resource : resources.entrySet()) {
+                Map<String, Object> sum = (Map<String, Object>) resource.getValue();
+                long bytes = asLong(sum.get("transferSize"));
+                aggregate.bytes.merge(resource.getKey(), bytes, Long::sum);
+                aggregate.requests.merge(resource.getKey(), asLong(sum.get("count")), Long::sum);
+                metrics.add("transfer_bytes", bytes, "type", type, "resource", resource.getKey());
+            }
+        }
+    }
+
+    /**
+     * The average timings and transferred bytes per page type, printed at the
+     * end of a run.
+     */
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-10s %8s", "type", "pages"));
+        for (String phase : PHASES) {
+            sb.append(String.format(" %16s", phase));
+        }
+        sb.append(String.format(" %14s%n", "avg [KiB]"));
+        for (Map.Entry<PageType, Aggregate> entry : aggregates.entrySet()) {
+            Aggregate aggregate = entry.getValue();
+            sb.append(String.format("%-10s %8d", entry.getKey(), aggregate.count));
+            for (String phase : PHASES) {
+                sb.append(String.format(" %16.1f",
+                        aggregate.millis.getOrDefault(phase, 0.0) / Math.max(1, aggregate.samples.getOrDefault(phase, 0))));
+            }
+            long total = aggregate.bytes.values().stream().mapToLong(Long::longValue).sum();
+            sb.append(String.format(" %14.1f%n", total / 1024.0 / aggregate.count));
+        }
+        // the last document of every page is never left
+        sb.append(String.format("%nTransferred bytes per page type and resource type, without the last page of every tab:%n"));
+        for (Map.Entry<PageType, Aggregate> entry : aggregates.entrySet()) {
+            Aggregate aggregate = entry.getValue();
+            for (Map.Entry<String, Long> bytes : new TreeMap<>(aggregate.bytes).entrySet()) {
+                sb.append(String.format("%-10s %-16s %8d requests %12.1f KiB%n", entry.getKey(), bytes.getKey(),
+                        aggregate.requests.getOrDefault(bytes.getKey(), (long) aggregate.count), bytes.getValue() / 1024.0));
+            }
+        }
+        if (failures > 0) {
+            sb.append(String.format("Timings could not be read for %d pages%n", failures));
+        }
+        return sb.toString();
+    }
+
+    private static long asLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static double asDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    private static class Aggregate {
+        private int count;
+        // sum of all pages per navigation phase
+        private Map<String, Double> millis = new LinkedHashMap<>();
+        private Map<String, Integer> samples = new LinkedHashMap<>();
+        // sum of all pages per resource type
+        private Map<String, Long> bytes = new LinkedHashMap<>();
+        private Map<String, Long> requests = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,114 @@
+package io.qbilon.linkedin.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.PlaywrightException;
+
+/**
+ * Replaces long living pages before the growing memory of the renderer slows
+ * them down. A page is recycled after a number of navigations or once its JS
+ * heap, as reported by {@code performance.memory}, exceeds a threshold.
+ * Crashed, closed or unresponsive pages are replaced as well.
+ *
+ * Callers ask {@link #check(Page)} for the page to continue with between two
+ * units of work and keep the returned page, the replaced one is closed.
+ */
+public class PageRecycler {
+
+    private static final Logger LOG = LogManager.getLogger(PageRecycler.class);
+
+    // doubles as the health check of the page
+    private static final String HEAP_SCRIPT = "() => performance.memory ? performance.memory.usedJSHeapSize : 0";
+
+    private int maxNavigations;
+    private long maxHeapBytes;
+    private Metrics metrics;
+    private Map<Page, PageState> states = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxNavigations the navigations after which a page is recycled, 0
+     *                       disables it
+     * @param maxHeapMb      the JS heap in MB above which a page is recycled, 0
+     *                       disables it
+     */
+    public PageRecycler(int maxNavigations, int maxHeapMb, Metrics metrics) {
+        this.maxNavigations = maxNavigations;
+        this.maxHeapBytes = maxHeapMb * 1024L * 1024L;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Called by {@link Util#navigate} for every navigation of a page.
+     */
+    public void navigated(Page page) {
+        state(page).navigations.incrementAndGet();
+    }
+
+    /**
+     * Returns the page to continue with, i.e., the given page if it is still
+     * healthy and otherwise a new page in the same context.
+     */
+    public Page check(Page page) {
+        PageState state = state(page);
+        String reason = null;
+        if (page.isClosed() || state.crashed) {
+            reason = "crashed";
+        } else {
+            long heapUsed = heapUsed(page);
+            if (heapUsed < 0) {
+                reason = "unresponsive";
+            } else if (maxNavigations > 0 && state.navigations.get() >= maxNavigations) {
+                reason = "navigations";
+            } else if (maxHeapBytes > 0 && heapUsed > maxHeapBytes) {
+                reason = "memory";
+            }
+        }
+        return reason == null ? page : replace(page, reason);
+    }
+
+    private Page replace(Page page, String reason) {
+        PageState state = states.remove(page);
+        LOG.info("Replacing the page after {} navigations ({})", state == null ? 0 : state.navigations.get(), reason);
+        metrics.increment("page_recycles", "reason", reason);
+        Page fresh = page.context().newPage();
+        try {
+            if (!page.isClosed()) {
+                page.close();
+            }
+        } catch (PlaywrightException e) {
+            // a crashed page may not close cleanly, the new page is all we need
+            LOG.debug("Could not close the replaced page: {}", e.getMessage());
+        }
+        return fresh;
+    }
+
+    private PageState state(Page page) {
+        return states.computeIfAbsent(page, key -> {
+            PageState state = new PageState();
+            key.onCrash(crashed -> state.crashed = true);
+            return state;
+        });
+    }
+
+    // -1 if the page does not respond
+    private long heapUsed(Page page) {
+        try {
+            Object heapUsed = page.evaluate(HEAP_SCRIPT);
+            return heapUsed instanceof Number ? ((Number) heapUsed).longValue() : 0;
+        } catch (PlaywrightException e) {
+            LOG.debug("The page did not respond: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    private static class PageState {
+        private AtomicInteger navigations = new AtomicInteger();
+        private volatile boolean crashed;
+    }
+}
@@ -0,0 +1,13 @@
+package io.qbilon.linkedin.util;
+
+/**
+ * The kinds of LinkedIn pages the scrapers visit.
+ */
+public enum PageType {
+    LOGIN,
+    SEARCH,
+    PROFILE,
+    // the experience details of a profile, i.e. /in/<name>/details/experience/
+    EXPERIENCE,
+    ABOUT
+}
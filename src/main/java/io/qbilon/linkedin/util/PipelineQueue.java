@@ -0,0 +1,77 @@
+package io.qbilon.linkedin.util;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands items from one stage of a pipeline to the next. The consuming stage
+ * iterates the queue like a normal collection, the iterator blocks until the
+ * next item is added and ends once the producing stage called
+ * {@link #close()}. {@link #size()} is the number of items added so far.
+ *
+ * Meant for a single consumer.
+ */
+public class PipelineQueue<T> extends AbstractCollection<T> {
+
+    private static final Object END = new Object();
+
+    private BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private AtomicInteger added = new AtomicInteger();
+
+    @Override
+    public boolean add(T item) {
+        added.incrementAndGet();
+        return queue.add(item);
+    }
+
+    /**
+     * No more items will be added.
+     */
+    public void close() {
+        queue.add(END);
+    }
+
+    @Override
+    public int size() {
+        return added.get();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private Object next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        next = END;
+                    }
+                    if (next == END) {
+                        // let a later iterator end as well
+                        queue.add(END);
+                    }
+                }
+                return next != END;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T item = (T) next;
+                next = null;
+                return item;
+            }
+        };
+    }
+}
@@ -0,0 +1,76 @@
+package io.qbilon.linkedin.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the progress shown in front of the log messages, e.g.
+ * {@code (12/100) - 00:03:12 | }. It does not need a browser, so the offline
+ * tools use it directly, the scrapers via {@link Util}.
+ */
+public class ProgressTracker {
+
+    private long startTime = System.currentTimeMillis();
+    private volatile int count = 0;
+    private volatile int size = 0;
+
+    public Progress progress() {
+        return progress(count, size);
+    }
+
+    /**
+     * The progress of the last message, without changing it. Can be read from
+     * other threads.
+     */
+    public Progress currentProgress() {
+        return new Progress(count, size, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * The returned progress is only formatted when it is printed, so it can be
+     * passed to log messages that might be disabled.
+     */
+    public Progress progress(int count, int size) {
+        // save for internal messages
+        this.count = count;
+        this.size = size;
+        return new Progress(count, size, System.currentTimeMillis() - startTime);
+    }
+
+    static String toTime(long millis) {
+        return String.format("%02d:%02d:%02d",
+                TimeUnit.MILLISECONDS.toHours(millis),
+                TimeUnit.MILLISECONDS.toMinutes(millis) -
+                        TimeUnit.HOURS.toMinutes(TimeUnit.MILLISECONDS.toHours(millis)),
+                TimeUnit.MILLISECONDS.toSeconds(millis) -
+                        TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(millis)));
+    }
+
+    public static class Progress {
+        private int count;
+        private int size;
+        private long elapsed;
+
+        Progress(int count, int size, long elapsed) {
+            this.count = count;
+            this.size = size;
+            this.elapsed = elapsed;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + count + "/" + size + ") - " + toTime(elapsed) + " | ";
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.qbilon.linkedin.util;
+
+/**
+ * A token bucket that limits the navigations of one account per hour. The
+ * bucket starts full, so short runs are not slowed down, and refills
+ * continuously.
+ */
+public class RateBudget {
+
+    private double perMillisecond;
+    private double capacity;
+    private double tokens;
+    private long lastRefill = System.currentTimeMillis();
+    private Metrics metrics;
+
+    /**
+     * @param perHour the number of navigations per hour, 0 means unlimited
+     * @param burst   the number of navigations that may happen back to back
+     */
+    public RateBudget(int perHour, int burst, Metrics metrics) {
+        this.perMillisecond = perHour / 3_600_000.0;
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Blocks until the budget allows the next navigation.
+     */
+    public void acquire() {
+        if (perMillisecond <= 0) {
+            return;
+        }
+        long wait;
+        synchronized (this) {
+            refill();
+            tokens--;
+            // a negative balance is the time the caller has to wait for its token
+            wait = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / perMillisecond);
+        }
+        if (wait > 0) {
+            metrics.add("rate_budget_wait_ms", wait);
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void refill() {
+        long now = System.currentTimeMillis();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * perMillisecond);
+        lastRefill = now;
+    }
+}
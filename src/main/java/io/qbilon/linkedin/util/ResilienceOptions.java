@@ -0,0 +1,102 @@
+package io.qbilon.linkedin.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.microsoft.playwright.options.WaitUntilState;
+
+import picocli.CommandLine.Option;
+
+/**
+ * Options shared by all scrapers that control how they cope with markup
+ * changes and slow or failing pages.
+ */
+public class ResilienceOptions {
+    @Option(names = { "--selectors" }, description = "An optional properties file with additional selector sets, e.g. 2023-06.PROFILE=section:has(> #experience). Use it like this: --selectors path/to/selectors.properties")
+    private File selectorsFile;
+    @Option(names = { "--selector-validation-pages" }, description = "The number of pages per page type the selectors are validated on. The run is aborted if none of them matches (default is 3)", defaultValue = "3")
+    private int validationPages;
+    @Option(names = { "--selector-breaker" }, description = "The number of consecutive pages of a type without a matching selector after which the run is aborted (default is 5)", defaultValue = "5")
+    private int breakerThreshold;
+    @Option(names = { "--timeout-floor" }, description = "The shortest timeout in milliseconds an operation gets, however fast it usually is (default is 2000)", defaultValue = "2000")
+    private double timeoutFloor;
+    @Option(names = { "--timeout-initial" }, description = "The timeout in milliseconds of an operation until enough of its latencies are known (default is 5000)", defaultValue = "5000")
+    private double timeoutInitial;
+    @Option(names = { "--timeout-ceiling" }, description = "The longest timeout in milliseconds an operation gets, also the default of everything without an adaptive timeout (default is 10000)", defaultValue = "10000")
+    private double timeoutCeiling;
+    @Option(names = { "--timeout-percentile" }, description = "The percentile of the recent latencies of an operation its timeout is based on (default is 99)", defaultValue = "99")
+    private double timeoutPercentile;
+    @Option(names = { "--timeout-margin" }, description = "The margin in percent added to the percentile (default is 50)", defaultValue = "50")
+    private double timeoutMargin;
+    @Option(names = { "--max-attempts" }, description = "How often a failed company, search page or profile is tried in total. Failed units are retried after the main pass (default is 3)", defaultValue = "3")
+    private int maxAttempts;
+    @Option(names = { "--retry-backoff" }, description = "The wait in seconds before the first retry of a failed unit, doubled for every further retry (default is 60)", defaultValue = "60")
+    private int retryBackoff;
+    @Option(names = { "--circuit-breaker-rate" }, description = "The failure rate (0-1) of the most recent units at which the scraper pauses, 0 disables it (default is 0.5)", defaultValue = "0.5")
+    private double breakerRate;
+    @Option(names = { "--circuit-breaker-window" }, description = "The number of most recent units the failure rate is computed on (default is 10)", defaultValue = "10")
+    private int breakerWindow;
+    @Option(names = { "--circuit-breaker-pause" }, description = "The pause in seconds when the failure rate is reached, doubled if the scraper still fails afterwards (default is 300)", defaultValue = "300")
+    private int breakerPause;
+    @Option(names = { "--session-snapshot" }, description = "The interval in seconds at which the session is saved to the state file during a run, 0 saves it only at the end (default is 120)", defaultValue = "120")
+    private int sessionSnapshot;
+    @Option(names = { "--recycle-after" }, description = "The number of navigations after which a page is replaced by a new one, 0 disables it (default is 300)", defaultValue = "300")
+    private int recycleAfter;
+    @Option(names = { "--recycle-heap" }, description = "The JS heap in MB above which a page is replaced by a new one, 0 disables it (default is 256)", defaultValue = "256")
+    private int recycleHeap;
+    @Option(names = { "--wait-until" }, split = ",", description = "When a navigation of a page type returns: COMMIT, DOMCONTENTLOADED, LOAD or NETWORKIDLE (after the load, once the network is quiet). Earlier states rely on the readiness selectors of the page type. Overrides the defaults SEARCH, PROFILE, EXPERIENCE and ABOUT = DOMCONTENTLOADED, LOGIN = LOAD. Use it like this: --wait-until SEARCH=COMMIT,PROFILE=LOAD")
+    private Map<PageType, WaitUntilState> waitUntil = new EnumMap<>(PageType.class);
+
+    public SelectorRegistry createSelectorRegistry(Metrics metrics) throws IOException {
+        SelectorRegistry registry = new SelectorRegistry(metrics, validationPages, breakerThreshold);
+        if (selectorsFile != null) {
+            registry.load(selectorsFile.toPath().toAbsolutePath());
+        }
+        return registry;
+    }
+
+    public TimeoutPolicy createTimeoutPolicy(Metrics metrics) {
+        return new TimeoutPolicy(timeoutFloor, timeoutInitial, timeoutCeiling, timeoutPercentile, timeoutMargin, metrics);
+    }
+
+    public <T> RetryQueue<T> createRetryQueue(Metrics metrics, ErrorCollector errors) {
+        return new RetryQueue<>(maxAttempts, Duration.ofSeconds(retryBackoff), Duration.ofMinutes(30), metrics, errors);
+    }
+
+    public CircuitBreaker createCircuitBreaker(Metrics metrics) {
+        return new CircuitBreaker(breakerRate, breakerWindow, breakerPause * 1000L, metrics);
+    }
+
+    public SessionKeeper createSessionKeeper(Path stateFile, String email, String password, Metrics metrics) {
+        return new SessionKeeper(stateFile, Duration.ofSeconds(sessionSnapshot), email, password, metrics);
+    }
+
+    public PageRecycler createPageRecycler(Metrics metrics) {
+        return new PageRecycler(recycleAfter, recycleHeap, metrics);
+    }
+
+    public Map<PageType, WaitUntilState> waitUntil() {
+        Map<PageType, WaitUntilState> states = new EnumMap<>(PageType.class);
+        states.put(PageType.LOGIN, WaitUntilState.LOAD);
+        states.put(PageType.SEARCH, WaitUntilState.DOMCONTENTLOADED);
+        states.put(PageType.PROFILE, WaitUntilState.DOMCONTENTLOADED);
+        states.put(PageType.EXPERIENCE, WaitUntilState.DOMCONTENTLOADED);
+        states.put(PageType.ABOUT, WaitUntilState.DOMCONTENTLOADED);
+        states.putAll(waitUntil);
+        return states;
+    }
+
+    public String describe() {
+        return "selectors = " + (selectorsFile == null ? null : selectorsFile.getAbsolutePath())
+                + ", selectorValidationPages = " + validationPages + ", selectorBreaker = " + breakerThreshold
+                + ", timeouts = [" + timeoutFloor + ", " + timeoutCeiling + "] ms at p" + timeoutPercentile + " + "
+                + timeoutMargin + "% starting at " + timeoutInitial + " ms, maxAttempts = " + maxAttempts + ", retryBackoff = " + retryBackoff
+                + "s, circuitBreaker = " + breakerRate + " of " + breakerWindow + " for " + breakerPause + "s, sessionSnapshot = "
+                + sessionSnapshot + "s, recycleAfter = " + recycleAfter + ", recycleHeap = " + recycleHeap + "MB, waitUntil = "
+                + waitUntil();
+    }
+}
@@ -0,0 +1,149 @@
+package io.qbilon.linkedin.util;
+
+import java.time.Duration;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Units of work (a company, a search page, a profile, ...) that failed during
+ * the main pass. Instead of skipping them, they are deferred and retried after
+ * the main pass with an exponential backoff, until they succeed or the maximum
+ * number of attempts is reached. Units that are given up are reported as
+ * warnings to the {@link ErrorCollector}.
+ */
+public class RetryQueue<T> {
+
+    private static final Logger LOG = LogManager.getLogger(RetryQueue.class);
+
+    private PriorityQueue<Entry<T>> queue = new PriorityQueue<>((a, b) -> Long.compare(a.due, b.due));
+    private Random rand = new Random();
+    private int maxAttempts;
+    private long backoffMillis;
+    private long maxBackoffMillis;
+    private Metrics metrics;
+    private ErrorCollector errors;
+    // may be deferred to by several workers
+    private int deferred = 0;
+    private int recovered = 0;
+    private int gaveUp = 0;
+
+    /**
+     * @param maxAttempts the number of attempts of a unit including the first
+     *                    one in the main pass
+     * @param backoff     the wait before the first retry, doubled for every
+     *                    further attempt
+     * @param maxBackoff  the longest wait before a retry
+     */
+    public RetryQueue(int maxAttempts, Duration backoff, Duration maxBackoff, Metrics metrics, ErrorCollector errors) {
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoff.toMillis();
+        this.maxBackoffMillis = Math.max(backoffMillis, maxBackoff.toMillis());
+        this.metrics = metrics;
+        this.errors = errors;
+    }
+
+    public interface Task<T> {
+        void run(T unit) throws Exception;
+    }
+
+    /**
+     * Defers a unit that failed in the main pass. Returns false if it is not
+     * retried, because only one attempt is allowed.
+     */
+    public synchronized boolean defer(T unit, Exception e) {
+        deferred++;
+        metrics.increment("retries", "outcome", "deferred");
+        return schedule(new Entry<>(unit), e);
+    }
+
+    public synchronized boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * Retries all deferred units, waiting until each is due and the circuit
+     * breaker is closed. Units that fail again are put back until they run out
+     * of attempts.
+     */
+    public void processAll(Task<T> task, CircuitBreaker breaker) {
+        if (!isEmpty()) {
+            LOG.info("Retrying {} failed units", queue.size());
+        }
+        Entry<T> entry;
+        while ((entry = poll()) != null) {
+            long wait = entry.due - System.currentTimeMillis();
+            if (wait > 0) {
+                LOG.info("Waiting {} before retrying {}", ProgressTracker.toTime(wait), entry.unit);
+                if (!sleep(wait)) {
+                    return;
+                }
+            }
+            if (!breaker.awaitClosed()) {
+                return;
+            }
+            LOG.info("Retrying {} (attempt {} of {})", entry.unit, entry.attempts + 1, maxAttempts);
+            try {
+                task.run(entry.unit);
+                breaker.succeeded();
+                recovered++;
+                metrics.increment("retries", "outcome", "recovered");
+            } catch (ErrorCollector.FailFastException e) {
+                throw e;
+            } catch (Exception e) {
+                breaker.failed();
+                synchronized (this) {
+                    schedule(entry, e);
+                }
+            }
+        }
+    }
+
+    public synchronized String stats() {
+        return "deferred = " + deferred + ", recovered = " + recovered + ", gave up = " + gaveUp
+                + (queue.isEmpty() ? "" : ", pending = " + queue.size());
+    }
+
+    private synchronized Entry<T> poll() {
+        return queue.poll();
+    }
+
+    private boolean schedule(Entry<T> entry, Exception e) {
+        entry.attempts++;
+        if (entry.attempts >= maxAttempts) {
+            gaveUp++;
+            metrics.increment("retries", "outcome", "gave_up");
+            // the failure itself was already reported when it happened in the main pass
+            errors.warning("Gave up on " + entry.unit + " after " + entry.attempts + " attempts: " + e);
+            return false;
+        }
+        long backoff = Math.min(maxBackoffMillis, backoffMillis << Math.min(30, entry.attempts - 1));
+        // some jitter, so retries of units that failed together do not hit the site at once
+        entry.due = System.currentTimeMillis() + backoff * (75 + rand.nextInt(51)) / 100;
+        queue.add(entry);
+        LOG.debug("Deferred {} after attempt {}", entry.unit, entry.attempts, e);
+        return true;
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static class Entry<T> {
+        private T unit;
+        private int attempts;
+        private long due;
+
+        Entry(T unit) {
+            this.unit = unit;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.qbilon.linkedin.util;
+
+import java.util.List;
+
+import org.apache.logging.log4j.ThreadContext;
+
+/**
+ * Holds what the current thread is working on, e.g. the phase of the scraper
+ * or the company and search page it is on. Metrics, flight recorder events
+ * and other instrumentation attach it to whatever they record. It is also
+ * mirrored into the log4j {@link ThreadContext}, so it ends up as fields of
+ * the structured log.
+ */
+public class ScrapeContext {
+
+    private static final ThreadLocal<String> PHASE = new ThreadLocal<>();
+    private static final ThreadLocal<PageType> PAGE_TYPE = new ThreadLocal<>();
+    private static final ThreadLocal<String> COMPANY = new ThreadLocal<>();
+    private static final ThreadLocal<String> SEARCH_TERM = new ThreadLocal<>();
+    private static final ThreadLocal<Integer> PAGE_NUMBER = new ThreadLocal<>();
+
+    private ScrapeContext() {
+    }
+
+    public static void setPhase(String phase) {
+        PHASE.set(phase);
+        ThreadContext.put("phase", phase);
+    }
+
+    public static String phase() {
+        return PHASE.get();
+    }
+
+    /**
+     * Set by {@link Util#navigate(com.microsoft.playwright.Page, String, PageType)},
+     * so everything that happens afterwards is attributed to the page type.
+     */
+    public static void setPageType(PageType pageType) {
+        PAGE_TYPE.set(pageType);
+        ThreadContext.put("pageType", pageType.name());
+    }
+
+    public static PageType pageType() {
+        return PAGE_TYPE.get();
+    }
+
+    public static void setCompany(String company) {
+        COMPANY.set(company);
+        ThreadContext.put("company", company);
+    }
+
+    public static String company() {
+        return COMPANY.get();
+    }
+
+    public static void setSearch(String searchTerm, int pageNumber) {
+        SEARCH_TERM.set(searchTerm);
+        PAGE_NUMBER.set(pageNumber);
+        ThreadContext.put("searchTerm", searchTerm);
+        ThreadContext.put("page", String.valueOf(pageNumber));
+    }
+
+    public static String searchTerm() {
+        return SEARCH_TERM.get();
+    }
+
+    /**
+     * Returns the number of the current search page or 0 if we are not on a
+     * search.
+     */
+    public static int pageNumber() {
+        Integer pageNumber = PAGE_NUMBER.get();
+        return pageNumber == null ? 0 : pageNumber;
+    }
+
+    /**
+     * Forgets company and search, e.g. when moving on to the next company.
+     */
+    public static void clearTarget() {
+        COMPANY.remove();
+        SEARCH_TERM.remove();
+        PAGE_NUMBER.remove();
+        ThreadContext.removeAll(List.of("company", "searchTerm", "page"));
+    }
+}
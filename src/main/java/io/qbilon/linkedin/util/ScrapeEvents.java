@@ -0,0 +1,124 @@
+package io.qbilon.linkedin.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events of the scrapers. Record a run with, e.g.,
+ * {@code -XX:StartFlightRecording=filename=scrape.jfr} and open the file in
+ * JDK Mission Control to line up navigations and sleeps with GC, allocation
+ * and thread activity. When no recording is running, the events are not
+ * committed and cost next to nothing.
+ *
+ * All events carry the {@link ScrapeContext} of the thread that emitted them.
+ */
+public class ScrapeEvents {
+
+    public static final String OK = "ok";
+    // a prefetched navigation whose page was not used
+    public static final String ABANDONED = "abandoned";
+
+    private ScrapeEvents() {
+    }
+
+    @Category({ "LinkedIn Scraper" })
+    @StackTrace(false)
+    public abstract static class ScrapeEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("URL Kind")
+        @Description("The type of the page, e.g. SEARCH or PROFILE")
+        String urlKind;
+        @Label("Company")
+        String company;
+        @Label("Search Term")
+        String searchTerm;
+        @Label("Page Number")
+        int pageNumber;
+        @Label("Outcome")
+        @Description("ok, abandoned, or the simple name of the exception that ended the operation")
+        String outcome;
+
+        /**
+         * Ends the event and commits it with the current context, if a recording
+         * is interested in it.
+         */
+        public void finish(String outcome) {
+            end();
+            if (shouldCommit()) {
+                PageType pageType = ScrapeContext.pageType();
+                this.phase = ScrapeContext.phase();
+                this.urlKind = urlKind != null ? urlKind : pageType == null ? null : pageType.name();
+                this.company = ScrapeContext.company();
+                this.searchTerm = ScrapeContext.searchTerm();
+                this.pageNumber = ScrapeContext.pageNumber();
+                this.outcome = outcome;
+                commit();
+            }
+        }
+
+        public void finish(Exception e) {
+            finish(e.getClass().getSimpleName());
+        }
+    }
+
+    @Name("io.qbilon.linkedin.Navigate")
+    @Label("Navigate")
+    public static class Navigate extends ScrapeEvent {
+        @Label("URL")
+        String url;
+
+        public Navigate(PageType type, String url) {
+            this.urlKind = type.name();
+            this.url = url;
+        }
+    }
+
+    @Name("io.qbilon.linkedin.Wait")
+    @Label("Wait")
+    @Description("A randomized sleep between two website interactions")
+    public static class Wait extends ScrapeEvent {
+        @Label("Requested Wait")
+        @Timespan(Timespan.MILLISECONDS)
+        long requested;
+
+        public Wait(long requestedMillis) {
+            this.requested = requestedMillis;
+        }
+    }
+
+    @Name("io.qbilon.linkedin.Extract")
+    @Label("Extract")
+    @Description("Reading the data of a rendered page")
+    public static class Extract extends ScrapeEvent {
+        @Label("Items")
+        int items;
+
+        public Extract(PageType type) {
+            this.urlKind = type.name();
+        }
+
+        public void setItems(int items) {
+            this.items = items;
+        }
+    }
+
+    @Name("io.qbilon.linkedin.ExcelIO")
+    @Label("Excel I/O")
+    public static class ExcelIO extends ScrapeEvent {
+        @Label("Operation")
+        String operation;
+        @Label("File")
+        String file;
+
+        public ExcelIO(String operation, String file) {
+            this.operation = operation;
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package io.qbilon.linkedin.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.Page;
+
+/**
+ * LinkedIn only lets you page through a limited number of results for a single
+ * search. This class splits a faceted search into smaller partitions until
+ * each of them reports a result count below the given cap.
+ *
+ * Facets are split in the given order, e.g. first the company sizes, then the
+ * locations and then the industries. A facet with several values is halved
+ * until it contains only a single value, before the next facet is split.
+ */
+public class SearchPartitioner {
+
+    private static final Logger LOG = LogManager.getLogger(SearchPartitioner.class);
+
+    private Util util;
+    private ErrorCollector errors;
+    private int resultCap;
+    private List<String> splitOrder;
+
+    public SearchPartitioner(Util util, ErrorCollector errors, int resultCap, List<String> splitOrder) {
+        this.util = util;
+        this.errors = errors;
+        this.resultCap = resultCap;
+        this.splitOrder = splitOrder;
+    }
+
+    /**
+     * Visits the first search page of the given partition and hands it to the
+     * consumer if it fits under the cap. Otherwise it is split and each half is
+     * processed recursively. Partitions without results are dropped. The
+     * consumer gets the first search page of the partition already open. The
+     * consumer and the partitioner may replace the page, so both return the
+     * page to continue with.
+     *
+     * If the count of the root search cannot be read, e.g. because the header
+     * selector broke, nothing is split and the root is consumed as a whole.
+     */
+    public Page partition(Page page, Partition root, Function<Partition, String> urlFactory,
+            BiFunction<Page, Partition, Page> consumer) {
+        return partition(page, root, urlFactory, consumer, true);
+    }
+
+    private Page partition(Page page, Partition partition, Function<Partition, String> urlFactory,
+            BiFunction<Page, Partition, Page> consumer, boolean root) {
+        page = util.recycle(page);
+        util.navigate(page, urlFactory.apply(partition), PageType.SEARCH);
+        util.doWait();
+        if (util.isEmptySearchPage(page, "for partition " + partition)) {
+            return page;
+        }
+        int resultCount = resultCount(page);
+        if (resultCount == -1 && root) {
+            String message = "WARNING: The result count of the search " + partition
+                    + " cannot be read, so it is not split up. Results may be truncated!";
+            LOG.warn("{}{}", util.progress(), message);
+            errors.warning(message);
+            return consumer.apply(page, partition);
+        }
+        // an unknown count may be above the cap as well
+        if (resultCount != -1 && resultCount <= resultCap) {
+            LOG.info("{}Partition {} has {} results", util.progress(), partition, describeCount(resultCount));
+            return consumer.apply(page, partition);
+        }
+
+        List<Partition> halves = split(partition);
+        if (halves.isEmpty()) {
+            String message = "WARNING: Partition " + partition + " has " + describeCount(resultCount)
+                    + " results but cannot be split any further. Results may be truncated!";
+            LOG.warn("{}{}", util.progress(), message);
+            errors.warning(message);
+            return consumer.apply(page, partition);
+        }
+        LOG.info("{}Partition {} has {} results, splitting it up", util.progress(), partition,
+                describeCount(resultCount));
+        for (Partition half : halves) {
+            page = partition(page, half, urlFactory, consumer, false);
+        }
+        return page;
+    }
+
+    private List<Partition> split(Partition partition) {
+        for (String facet : splitOrder) {
+            List<String> values = partition.facetValues(facet);
+            if (values.size() > 1) {
+                int middle = values.size() / 2;
+                return List.of(
+                        partition.with(facet, values.subList(0, middle)),
+                        partition.with(facet, values.subList(middle, values.size())));
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Reads the result count from the header of the search results, e.g.
+     * "Ungefähr 1.900 Ergebnisse". Returns -1 if the count could not be read.
+     */
+    private int resultCount(Page page) {
+        Locator header = page.locator(util.selector(PageType.SEARCH) + " h2");
+        if (header.count() == 0) {
+            return -1;
+        }
+        String digits = header.first().textContent().replaceAll("[^0-9]", "");
+        if (digits.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String describeCount(int resultCount) {
+        return resultCount == -1 ? "an unknown number of" : String.valueOf(resultCount);
+    }
+
+    public static class Partition {
+        private Map<String, List<String>> urlParams;
+
+        public Partition(Map<String, List<String>> urlParams) {
+            this.urlParams = new LinkedHashMap<>(urlParams);
+        }
+
+        public Map<String, List<String>> getUrlParams() {
+            return urlParams;
+        }
+
+        /**
+         * Facet values are encoded like ["103035651","101282230"] within a
+         * single url parameter.
+         */
+        public List<String> facetValues(String facet) {
+            List<String> params = urlParams.get(facet);
+            if (params == null || params.isEmpty()) {
+                return List.of();
+            }
+            String value = params.get(0).trim();
+            if (value.startsWith("[") && value.endsWith("]")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            return Arrays.stream(value.split(","))
+                    .map(v -> v.trim().replace("\"", ""))
+                    .filter(v -> !v.isEmpty())
+                    .collect(Collectors.toList());
+        }
+
+        Partition with(String facet, List<String> values) {
+            Partition partition = new Partition(urlParams);
+            String encoded = values.stream().map(v -> "\"" + v + "\"").collect(Collectors.joining(",", "[", "]"));
+            partition.urlParams.put(facet, new ArrayList<>(List.of(encoded)));
+            return partition;
+        }
+
+        @Override
+        public String toString() {
+            return urlParams.entrySet().stream()
+                    .filter(entry -> !entry.getKey().equals("sid") && !entry.getKey().equals("origin")
+                            && !entry.getKey().equals("page"))
+                    .map(entry -> entry.getKey() + "=" + String.join(",", entry.getValue()))
+                    .collect(Collectors.joining(" ", "[", "]"));
+        }
+    }
+}
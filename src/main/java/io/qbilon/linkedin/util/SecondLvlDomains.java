@@ -1,5 +1,7 @@
 package io.qbilon.linkedin.util;
 
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -15,6 +17,24 @@ public class SecondLvlDomains {
         return slds.contains(domain);
     }
 
+    public String getDomain(String urlString) throws MalformedURLException {
+        URL url = new URL(urlString);
+        String host = url.getHost();
+        String[] segments = host.split("\\.");
+        // take the last two segments
+        String seg1 = segments[segments.length - 2];
+        String seg2 = segments[segments.length - 1];
+        String domain = seg1 + "." + seg2;
+        if (segments.length > 2) {
+            // maybe its a second level domain?
+            if (contains(domain)) {
+                // take the last three segments
+                domain = segments[segments.length - 3] + "." + domain;
+            }
+        }
+        return domain;
+    }
+
     private void init() {
         slds.add("eu.com");
         slds.add("com.ac");
@@ -0,0 +1,182 @@
+package io.qbilon.linkedin.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.TimeoutError;
+
+/**
+ * The selectors that tell us a page of a given type is rendered, in versioned
+ * sets. When LinkedIn changes its markup, a new set can be added with
+ * {@code --selectors} without touching the code.
+ *
+ * The first pages of every type are used to validate the active set. If its
+ * selector misses but the selector of another set matches the page, that set
+ * becomes the active one. If none of the first pages matches, or too many
+ * pages in a row miss later on, the circuit breaker trips and aborts the run,
+ * instead of waiting the full timeout for every remaining page.
+ *
+ * The selector file is a properties file with lines like
+ * {@code 2023-06.PROFILE=section:has(> #experience)}. Its sets take
+ * precedence over the built-in ones.
+ */
+public class SelectorRegistry {
+
+    private static final Logger LOG = LogManager.getLogger(SelectorRegistry.class);
+
+    public static final String BUILT_IN_VERSION = "2023-03";
+    /**
+     * The timeout in milliseconds of the pages the selectors are validated on,
+     * independent of the adaptive timeouts, which know no latencies yet.
+     */
+    public static final double VALIDATION_TIMEOUT = 5000;
+
+    private List<SelectorSet> sets = new ArrayList<>();
+    private Map<PageType, SelectorSet> active = new EnumMap<>(PageType.class);
+    private Map<PageType, Integer> validatedPages = new EnumMap<>(PageType.class);
+    private Map<PageType, Integer> consecutiveMisses = new EnumMap<>(PageType.class);
+    private Metrics metrics;
+    private int validationPages;
+    private int breakerThreshold;
+
+    public SelectorRegistry(Metrics metrics, int validationPages, int breakerThreshold) {
+        this.metrics = metrics;
+        this.validationPages = validationPages;
+        this.breakerThreshold = breakerThreshold;
+        SelectorSet builtIn = new SelectorSet(BUILT_IN_VERSION);
+        builtIn.selectors.put(PageType.SEARCH, ".search-results-container");
+        builtIn.selectors.put(PageType.PROFILE, "section:has(> #experience)");
+        builtIn.selectors.put(PageType.EXPERIENCE, "main section:has(.scaffold-finite-scroll__content > ul.pvs-list)");
+        builtIn.selectors.put(PageType.ABOUT, "dl.overflow-hidden");
+        sets.add(builtIn);
+    }
+
+    /**
+     * Adds the selector sets of the given file in front of the known ones.
+     */
+    public void load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        Map<String, SelectorSet> loaded = new LinkedHashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            int separator = key.lastIndexOf('.');
+            if (separator <= 0) {
+                throw new IOException("Invalid selector key '" + key + "', expected <version>.<page type>");
+            }
+            String version = key.substring(0, separator);
+            PageType type;
+            try {
+                type = PageType.valueOf(key.substring(separator + 1).toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid selector key '" + key + "', unknown page type, expected one of "
+                        + Arrays.toString(PageType.values()), e);
+            }
+            loaded.computeIfAbsent(version, SelectorSet::new).selectors.put(type, properties.getProperty(key).trim());
+        }
+        List<SelectorSet> versions = new ArrayList<>(loaded.values());
+        // newer versions first
+        versions.sort((a, b) -> b.version.compareTo(a.version));
+        sets.addAll(0, versions);
+        active.clear();
+    }
+
+    public synchronized String selector(PageType type) {
+        return activeSet(type).selectors.get(type);
+    }
+
+    /**
+     * Waits until the page of the given type is rendered. Throws a
+     * {@link ErrorCollector.FailFastException} if the selectors are considered
+     * broken.
+     */
+    public void waitUntilReady(Page page, PageType type, double timeout) {
+        SelectorSet set;
+        synchronized (this) {
+            set = activeSet(type);
+        }
+        try {
+            page.waitForSelector(set.selectors.get(type), new Page.WaitForSelectorOptions().setTimeout(timeout));
+            hit(type);
+        } catch (TimeoutError e) {
+            SelectorSet matching = findMatchingSet(page, type, set);
+            if (matching != null) {
+                synchronized (this) {
+                    active.put(type, matching);
+                }
+                LOG.warn("WARNING: Selector set {} does not match {} pages anymore, switched to set {}", set.version,
+                        type, matching.version);
+                hit(type);
+                return;
+            }
+            miss(type, set);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns true once the first pages of the given type matched.
+     */
+    public synchronized boolean isValidated(PageType type) {
+        return validatedPages.getOrDefault(type, 0) >= validationPages;
+    }
+
+    private SelectorSet findMatchingSet(Page page, PageType type, SelectorSet failed) {
+        for (SelectorSet candidate : sets) {
+            String selector = candidate.selectors.get(type);
+            if (candidate != failed && selector != null && page.locator(selector).count() > 0) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void hit(PageType type) {
+        consecutiveMisses.put(type, 0);
+        int pages = validatedPages.merge(type, 1, Integer::sum);
+        if (pages == validationPages) {
+            LOG.info("Selector set {} validated for {} pages", activeSet(type).version, type);
+        }
+    }
+
+    private synchronized void miss(PageType type, SelectorSet set) {
+        metrics.increment("selector_misses", "type", type.name(), "version", set.version);
+        int misses = consecutiveMisses.merge(type, 1, Integer::sum);
+        // single pages might legitimately miss, e.g. profiles without experience
+        if (misses >= (isValidated(type) ? breakerThreshold : validationPages)) {
+            throw new ErrorCollector.FailFastException("ERROR: The " + type + " selector '" + set.selectors.get(type)
+                    + "' of set " + set.version + " missed on " + misses + " consecutive " + type
+                    + " pages. LinkedIn most likely changed its markup, provide a new selector set with --selectors. Aborting!");
+        }
+    }
+
+    private SelectorSet activeSet(PageType type) {
+        return active.computeIfAbsent(type, key -> sets.stream()
+                .filter(set -> set.selectors.containsKey(key))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No selector known for " + key + " pages")));
+    }
+
+    private static class SelectorSet {
+        private String version;
+        private Map<PageType, String> selectors = new EnumMap<>(PageType.class);
+
+        SelectorSet(String version) {
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.qbilon.linkedin.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.microsoft.playwright.BrowserContext;
+
+/**
+ * Keeps the session of an account alive during a run. The storage state is
+ * written to the state file at a fixed interval, so a crashed run does not
+ * lose the refreshed cookies, and the credentials are kept to log in again
+ * when LinkedIn redirects a navigation to the login.
+ *
+ * Playwright is not thread safe, so the keeper does not run on its own thread
+ * but is called by {@link Util#navigate} on the thread that owns the page.
+ */
+public class SessionKeeper {
+
+    private static final Logger LOG = LogManager.getLogger(SessionKeeper.class);
+
+    private Path stateFile;
+    private long intervalMillis;
+    private String email;
+    private String password;
+    private Metrics metrics;
+    private volatile long lastSnapshot = System.currentTimeMillis();
+
+    /**
+     * @param interval the time between two snapshots, zero disables them
+     */
+    public SessionKeeper(Path stateFile, Duration interval, String email, String password, Metrics metrics) {
+        this.stateFile = stateFile;
+        this.intervalMillis = interval.toMillis();
+        this.email = email;
+        this.password = password;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Whether LinkedIn sent us to the login or signup instead of the
+     * requested page, i.e., the session expired.
+     */
+    public static boolean isLoginRedirect(String url) {
+        return url.startsWith("https://www.linkedin.com/login")
+                || url.startsWith("https://www.linkedin.com/signup/")
+                || url.startsWith("https://www.linkedin.com/uas/login")
+                || url.startsWith("https://www.linkedin.com/authwall");
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void snapshotIfDue(BrowserContext context) {
+        if (intervalMillis > 0 && System.currentTimeMillis() - lastSnapshot >= intervalMillis) {
+            snapshot(context);
+        }
+    }
+
+    /**
+     * Writes the storage state to a temporary file next to the state file and
+     * moves it over the state file, so a crash never leaves a half written
+     * state behind. A failed snapshot is only logged, the next one may work.
+     */
+    public void snapshot(BrowserContext context) {
+        lastSnapshot = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try {
+            String state = context.storageState();
+            // the workers of a run share the state file
+            synchronized (this) {
+                Path tmp = Files.createTempFile(stateFile.toAbsolutePath().getParent(), "state-", ".tmp");
+                Files.writeString(tmp, state, StandardCharsets.UTF_8);
+                Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            metrics.increment("session_snapshots");
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("WARNING: Could not save the session to {}: {}", stateFile, e.getMessage());
+        } finally {
+            metrics.recordSince("session_snapshot", start);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.qbilon.linkedin.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.DoubleConsumer;
+
+import com.microsoft.playwright.TimeoutError;
+
+/**
+ * Timeouts derived from the latencies we actually observe. For every operation
+ * (e.g. navigate/PROFILE) the policy keeps the most recent latencies and sets
+ * the timeout to a high percentile of them plus a margin, bounded by a floor
+ * and a ceiling. Until enough samples are known, a short initial timeout is
+ * used, so a run does not start with the ceiling for every operation.
+ *
+ * That way slow pages still load, while an operation that will never succeed
+ * fails after a few seconds instead of blocking the scraper for the full
+ * timeout.
+ *
+ * A timed out operation is recorded with the timeout it had, so a site that
+ * gets slower pushes its timeouts up again.
+ */
+public class TimeoutPolicy {
+
+    private static final int WINDOW = 200;
+    private static final int MIN_SAMPLES = 20;
+
+    private double floor;
+    private double initial;
+    private double ceiling;
+    private double percentile;
+    private double margin;
+    private Metrics metrics;
+    private Map<String, Window> windows = new TreeMap<>();
+
+    /**
+     * @param floor      the shortest timeout in milliseconds
+     * @param initial    the timeout in milliseconds as long as too few latencies
+     *                   of an operation are known
+     * @param ceiling    the longest timeout in milliseconds
+     * @param percentile the percentile (0-100) of the recent latencies the
+     *                   timeout is based on
+     * @param margin     the margin in percent added to the percentile
+     */
+    public TimeoutPolicy(double floor, double initial, double ceiling, double percentile, double margin,
+            Metrics metrics) {
+        this.floor = floor;
+        this.ceiling = Math.max(floor, ceiling);
+        this.initial = Math.max(floor, Math.min(this.ceiling, initial));
+        this.percentile = percentile;
+        this.margin = margin;
+        this.metrics = metrics;
+    }
+
+    public double ceiling() {
+        return ceiling;
+    }
+
+    /**
+     * The timeout in milliseconds for the next execution of the operation.
+     */
+    public synchronized double timeout(String operation) {
+        Window window = windows.get(operation);
+        if (window == null || window.filled < MIN_SAMPLES) {
+            // a timed out operation is recorded with this timeout, so the
+            // percentile grows past it if the operation is really slower
+            return initial;
+        }
+        double timeout = window.percentile(percentile) * (1 + margin / 100);
+        return Math.max(floor, Math.min(ceiling, timeout));
+    }
+
+    public synchronized void record(String operation, double millis) {
+        windows.computeIfAbsent(operation, key -> new Window()).add(millis);
+    }
+
+    /**
+     * Runs the action with the current timeout of the operation and records
+     * how long it took.
+     */
+    public void run(String operation, DoubleConsumer action) {
+        double timeout = timeout(operation);
+        long start = System.nanoTime();
+        try {
+            action.accept(timeout);
+            record(operation, (System.nanoTime() - start) / 1_000_000.0);
+        } catch (TimeoutError e) {
+            record(operation, timeout);
+            metrics.increment("timeouts", "operation", operation);
+            throw e;
+        }
+    }
+
+    /**
+     * The current timeout of every operation, printed at the end of a run.
+     */
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Window> entry : windows.entrySet()) {
+            sb.append(String.format("%-24s %8d samples %10.0f ms%n", entry.getKey(), entry.getValue().filled,
+                    timeout(entry.getKey())));
+        }
+        return sb.toString();
+    }
+
+    private static class Window {
+        private double[] latencies = new double[WINDOW];
+        private int next;
+        private int filled;
+
+        void add(double millis) {
+            latencies[next] = millis;
+            next = (next + 1) % latencies.length;
+            filled = Math.min(filled + 1, latencies.length);
+        }
+
+        double percentile(double percentile) {
+            double[] sorted = Arrays.copyOf(latencies, filled);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * filled) - 1;
+            return sorted[Math.max(0, Math.min(filled - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package io.qbilon.linkedin.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A persistent key/value cache whose entries expire after a given time to
+ * live. Values are (de-)serialized with a {@link Codec}. The cache is loaded
+ * once and written back as a whole via {@link #save()}.
+ */
+public class TtlCache<V> {
+
+    private static final int MAGIC = 0x51544331; // "QTC1"
+
+    public interface Codec<V> {
+        void write(DataOutputStream out, V value) throws IOException;
+
+        V read(DataInputStream in) throws IOException;
+    }
+
+    private Path path;
+    private Codec<V> codec;
+    private long ttlMillis;
+    private Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private AtomicInteger hits = new AtomicInteger();
+    private AtomicInteger misses = new AtomicInteger();
+
+    public TtlCache(Path path, Codec<V> codec, Duration ttl) {
+        this.path = path;
+        this.codec = codec;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    /**
+     * Loads the persisted entries, if there are any. Expired entries are
+     * dropped right away.
+     */
+    public TtlCache<V> load() throws IOException {
+        if (!path.toFile().exists() || Files.size(path) == 0) {
+            return this;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(path + " is not a cache file");
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String key = in.readUTF();
+                long timestamp = in.readLong();
+                V value = codec.read(in);
+                if (isFresh(timestamp)) {
+                    entries.put(key, new Entry<>(timestamp, value));
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the cached value, or null if there is no fresh entry for the key.
+     */
+    public V get(String key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && isFresh(entry.timestamp)) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Like {@link #get(String)}, but does not count as a hit or miss, e.g. for
+     * looking ahead.
+     */
+    public boolean contains(String key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && isFresh(entry.timestamp);
+    }
+
+    public void put(String key, V value) {
+        entries.put(key, new Entry<>(System.currentTimeMillis(), value));
+    }
+
+    /**
+     * Writes all entries to a temporary file first and then moves it in place,
+     * so a crash while saving does not destroy the existing cache. The
+     * workers of a run share the temporary file, so saves do not overlap.
+     */
+    public synchronized void save() throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<String, Entry<V>> snapshot = Map.copyOf(entries);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry<V>> entry : snapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().timestamp);
+                codec.write(out, entry.getValue().value);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public String stats() {
+        int total = getHits() + getMisses();
+        long rate = total == 0 ? 0 : Math.round(100.0 * getHits() / total);
+        return getHits() + " hits, " + getMisses() + " misses (" + rate + "% hit rate)";
+    }
+
+    private boolean isFresh(long timestamp) {
+        return System.currentTimeMillis() - timestamp < ttlMillis;
+    }
+
+    private static class Entry<V> {
+        private long timestamp;
+        private V value;
+
+        Entry(long timestamp, V value) {
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+    }
+}
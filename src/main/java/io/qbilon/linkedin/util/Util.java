@@ -11,41 +11,341 @@ import java.nio.file.Path;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.microsoft.playwright.APIResponse;
 import com.microsoft.playwright.Browser;
 import com.microsoft.playwright.BrowserContext;
 import com.microsoft.playwright.BrowserType;
 import com.microsoft.playwright.Locator;
 import com.microsoft.playwright.Page;
 import com.microsoft.playwright.Playwright;
+import com.microsoft.playwright.PlaywrightException;
 import com.microsoft.playwright.options.AriaRole;
 import com.microsoft.playwright.options.BoundingBox;
+import com.microsoft.playwright.options.LoadState;
+import com.microsoft.playwright.options.RequestOptions;
+import com.microsoft.playwright.options.WaitUntilState;
 
 public class Util {
 
+    private static final Logger LOG = LogManager.getLogger(Util.class);
+
     private boolean verbose;
     private int delay;
     private int variance;
     private Random rand = new Random();
-    private long startTime = System.currentTimeMillis();
-    private int count = 0;
-    private int size = 0;
+    private ProgressTracker progress = new ProgressTracker();
+    private Metrics metrics;
+    private NavigationTimings navigationTimings;
+    private SelectorRegistry selectors;
+    private TimeoutPolicy timeouts;
+    private RateBudget rateBudget;
+    private SessionKeeper session;
+    private HttpFetcher httpFetcher;
+    private PageRecycler recycler;
+    private Map<PageType, WaitUntilState> waitUntil = new EnumMap<>(PageType.class);
 
     public Util(boolean verbose, int delay) {
+        this(verbose, delay, new Metrics());
+    }
+
+    public Util(boolean verbose, int delay, Metrics metrics) {
         this.verbose = verbose;
         this.delay = delay;
         this.variance = delay / 2;
+        this.metrics = metrics;
+        this.selectors = new SelectorRegistry(metrics, 3, 5);
+        this.timeouts = new TimeoutPolicy(2000, 5000, 10000, 99, 50, metrics);
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * If set, the browser side timings are read after every navigation.
+     */
+    public void setNavigationTimings(NavigationTimings navigationTimings) {
+        this.navigationTimings = navigationTimings;
+    }
+
+    public void setSelectors(SelectorRegistry selectors) {
+        this.selectors = selectors;
+    }
+
+    public void setTimeouts(TimeoutPolicy timeouts) {
+        this.timeouts = timeouts;
+    }
+
+    public TimeoutPolicy getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * If set, every navigation waits for the budget of the account.
+     */
+    public void setRateBudget(RateBudget rateBudget) {
+        this.rateBudget = rateBudget;
+    }
+
+    public RateBudget getRateBudget() {
+        return rateBudget;
+    }
+
+    /**
+     * If set, the session is saved periodically and renewed when a navigation
+     * is redirected to the login.
+     */
+    public void setSession(SessionKeeper session) {
+        this.session = session;
+    }
+
+    /**
+     * If set, gets the cookies of the session whenever it logs in again.
+     */
+    public void setHttpFetcher(HttpFetcher httpFetcher) {
+        this.httpFetcher = httpFetcher;
+    }
+
+    /**
+     * When a navigation of the given page type returns. Types without an
+     * entry wait for the load event. Anything earlier relies on
+     * {@link #waitUntilReady} for the nodes that are actually needed.
+     */
+    public void setWaitUntil(Map<PageType, WaitUntilState> waitUntil) {
+        this.waitUntil = new EnumMap<>(PageType.class);
+        this.waitUntil.putAll(waitUntil);
+    }
+
+    public void setPageRecycler(PageRecycler recycler) {
+        this.recycler = recycler;
+    }
+
+    /**
+     * Returns the page to continue with. Without a {@link PageRecycler} that
+     * is always the given page.
+     */
+    public Page recycle(Page page) {
+        return recycler == null ? page : recycler.check(page);
+    }
+
+    /**
+     * A util for another thread of the same account. It shares the metrics,
+     * timeouts, selectors, budget and session, but has its own progress.
+     */
+    public Util forWorker() {
+        Util util = new Util(verbose, delay, metrics);
+        util.navigationTimings = navigationTimings;
+        util.selectors = selectors;
+        util.timeouts = timeouts;
+        util.recycler = recycler;
+        util.waitUntil = waitUntil;
+        util.rateBudget = rateBudget;
+        util.session = session;
+        util.httpFetcher = httpFetcher;
+        return util;
+    }
+
+    /**
+     * A util for another account, which has its own budget and session.
+     */
+    public Util forAccount(RateBudget rateBudget) {
+        Util util = forWorker();
+        util.rateBudget = rateBudget;
+        util.session = null;
+        util.httpFetcher = null;
+        return util;
+    }
+
+    /**
+     * The currently active selector that marks a rendered page of the given
+     * type.
+     */
+    public String selector(PageType type) {
+        return selectors.selector(type);
+    }
+
+    public void navigate(Page page, String url, PageType type) {
+        navigate(page, url, type, true);
+    }
+
+    private void navigate(Page page, String url, PageType type, boolean relogin) {
+        if (rateBudget != null) {
+            rateBudget.acquire();
+        }
+        if (recycler != null) {
+            recycler.navigated(page);
+        }
+        collectBeforeLeaving(page);
+        ScrapeContext.setPageType(type);
+        ScrapeEvents.Navigate event = new ScrapeEvents.Navigate(type, url);
+        long start = System.nanoTime();
+        event.begin();
+        try {
+            timeouts.run("navigate/" + type, timeout -> page.navigate(url,
+                    new Page.NavigateOptions().setTimeout(timeout).setWaitUntil(waitUntil(type))));
+            event.finish(ScrapeEvents.OK);
+        } catch (RuntimeException e) {
+            event.finish(e);
+            throw e;
+        } finally {
+            metrics.recordLatency(type, "navigate", start);
+        }
+        afterNavigation(page, url, type, relogin);
+    }
+
+    /**
+     * Starts loading the url and returns as soon as the server answered, so
+     * the caller can work on another page meanwhile. The navigation counts
+     * against the rate budget like any other. {@link #finishNavigation} waits
+     * for the page to load, or {@link #abandonNavigation} drops it.
+     */
+    public PendingNavigation startNavigation(Page page, String url, PageType type) {
+        if (rateBudget != null) {
+            rateBudget.acquire();
+        }
+        if (recycler != null) {
+            recycler.navigated(page);
+        }
+        collectBeforeLeaving(page);
+        PendingNavigation pending = new PendingNavigation(type, url);
+        pending.event.begin();
+        try {
+            timeouts.run("commit/" + type, timeout -> page.navigate(url,
+                    new Page.NavigateOptions().setTimeout(timeout).setWaitUntil(WaitUntilState.COMMIT)));
+        } catch (RuntimeException e) {
+            pending.event.finish(e);
+            metrics.recordLatency(type, "navigate", pending.start);
+            throw e;
+        }
+        return pending;
+    }
+
+    /**
+     * Waits for a navigation begun with {@link #startNavigation}. The navigate
+     * latency spans the whole navigation, the load latency only the part of
+     * it the caller did not hide.
+     */
+    public void finishNavigation(Page page, PendingNavigation pending) {
+        PageType type = pending.type;
+        ScrapeContext.setPageType(type);
+        long start = System.nanoTime();
+        try {
+            timeouts.run("load/" + type, timeout -> page.waitForLoadState(loadState(type),
+                    new Page.WaitForLoadStateOptions().setTimeout(timeout)));
+            pending.event.finish(ScrapeEvents.OK);
+        } catch (RuntimeException e) {
+            pending.event.finish(e);
+            throw e;
+        } finally {
+            metrics.recordLatency(type, "load", start);
+            metrics.recordLatency(type, "navigate", pending.start);
+        }
+        afterNavigation(page, pending.url, type, true);
+    }
+
+    /**
+     * Ends a navigation begun with {@link #startNavigation} whose page is not
+     * used after all.
+     */
+    public void abandonNavigation(PendingNavigation pending) {
+        pending.event.finish(ScrapeEvents.ABANDONED);
+    }
+
+    private WaitUntilState waitUntil(PageType type) {
+        return waitUntil.getOrDefault(type, WaitUntilState.LOAD);
+    }
+
+    private LoadState loadState(PageType type) {
+        switch (waitUntil(type)) {
+            case COMMIT:
+                // the commit already happened in startNavigation
+                return LoadState.DOMCONTENTLOADED;
+            case DOMCONTENTLOADED:
+                return LoadState.DOMCONTENTLOADED;
+            case NETWORKIDLE:
+                return LoadState.NETWORKIDLE;
+            default:
+                return LoadState.LOAD;
+        }
+    }
+
+    private static boolean returnsBeforeLoad(WaitUntilState state) {
+        return state == WaitUntilState.COMMIT || state == WaitUntilState.DOMCONTENTLOADED;
+    }
+
+    // costs a round trip to the browser, so only with --navigation-timing
+    private void collectBeforeLeaving(Page page) {
+        if (navigationTimings != null) {
+            navigationTimings.collectBeforeLeaving(page);
+        }
+    }
+
+    private void afterNavigation(Page page, String url, PageType type, boolean relogin) {
+        if (session != null && relogin && type != PageType.LOGIN && SessionKeeper.isLoginRedirect(page.url())) {
+            LOG.info("{}The session expired, logging in again ...", progress());
+            metrics.increment("session_expired");
+            submitLogin(page, session.getEmail(), session.getPassword());
+            timeouts.run("login", timeout -> page.waitForURL(current -> !SessionKeeper.isLoginRedirect(current),
+                    new Page.WaitForURLOptions().setTimeout(timeout)));
+            if (!page.url().contains("/checkpoint/")) {
+                session.snapshot(page.context());
+                if (httpFetcher != null) {
+                    httpFetcher.updateSession(page.context().storageState());
+                }
+                navigate(page, url, type, false);
+                return;
+            }
+        }
+        if (page.url().contains("/checkpoint/")) {
+            metrics.increment("checkpoints");
+            throw new CheckpointException("LinkedIn asks for a security verification at " + page.url());
+        }
+        if (navigationTimings != null) {
+            navigationTimings.collect(page, type);
+        }
+        if (session != null) {
+            session.snapshotIfDue(page.context());
+        }
+    }
+
+    /**
+     * Waits for the selector that tells us the page of the given type is
+     * rendered and records how long it took. As long as the selectors of the
+     * type are not validated, they might be broken, so a miss only costs the
+     * short {@link SelectorRegistry#VALIDATION_TIMEOUT}.
+     */
+    public void waitUntilReady(Page page, PageType type) {
+        long start = System.nanoTime();
+        if (selectors.isValidated(type)) {
+            timeouts.run("ready/" + type, timeout -> selectors.waitUntilReady(page, type, timeout));
+        } else {
+            selectors.waitUntilReady(page, type, SelectorRegistry.VALIDATION_TIMEOUT);
+            timeouts.record("ready/" + type, (System.nanoTime() - start) / 1_000_000.0);
+        }
+        metrics.recordLatency(type, "ready", start);
+        if (navigationTimings != null && returnsBeforeLoad(waitUntil(type))) {
+            navigationTimings.markReady(page, type);
+        }
+    }
+
+    private void waitForFilterButton(Page page, String visibleButtonText) {
+        timeouts.run("filter", timeout -> page.waitForSelector("text=\"" + visibleButtonText + "\"",
+                new Page.WaitForSelectorOptions().setTimeout(timeout)));
     }
 
     public void buttonWithInput(Page page, String visibleButtonText, String visibleInputText,
             List<String> textsToType) {
-        page.waitForSelector("text=\"" + visibleButtonText + "\"");
+        waitForFilterButton(page, visibleButtonText);
         Locator button = page.locator("text=\"" + visibleButtonText + "\"");
         button.click();
         doWait(1000, 250);
@@ -71,7 +371,7 @@ public class Util {
     }
 
     public void buttonWithMultiSelection(Page page, String visibleButtonText, List<String> selectionIds) {
-        page.waitForSelector("text=\"" + visibleButtonText + "\"");
+        waitForFilterButton(page, visibleButtonText);
         Locator button = page.locator("text=\"" + visibleButtonText + "\"");
         button.click();
         doWait(1000, 250);
@@ -108,8 +408,7 @@ public class Util {
     }
 
     public Browser createBrowser(Playwright playwright, Path pathToContext) {
-        System.out.println(progress() + "Starting browser ...");
-        Browser browser = playwright.chromium().launch(new BrowserType.LaunchOptions().setHeadless(false));
+        Browser browser = launch(playwright);
         if (!pathToContext.toFile().exists()) {
             // create the file
             try {
@@ -120,10 +419,55 @@ public class Util {
             }
         }
         BrowserContext context = browser.newContext(new Browser.NewContextOptions().setStorageStatePath(pathToContext));
-        context.setDefaultTimeout(10000.0);
+        // everything without an adaptive timeout of its own
+        context.setDefaultTimeout(timeouts.ceiling());
         return browser;
     }
 
+    /**
+     * Opens a further session from the storage state of an already logged in
+     * context, as returned by {@code BrowserContext.storageState()}. Instead of
+     * loading the feed, a single request without redirects checks whether the
+     * cookies are accepted. Only if not, the session logs in on its own.
+     */
+    public Page openSession(Playwright playwright, String storageState, String email, String password) {
+        Browser browser = launch(playwright);
+        BrowserContext context = browser.newContext(new Browser.NewContextOptions().setStorageState(storageState));
+        context.setDefaultTimeout(timeouts.ceiling());
+        if (isLoggedIn(context)) {
+            metrics.increment("sessions_cloned");
+            return context.newPage();
+        }
+        LOG.info("{}The cloned session was not accepted, logging in instead ...", progress());
+        metrics.increment("sessions_relogged");
+        return loginToLinkedIn(context, email, password);
+    }
+
+    /**
+     * A logged in session gets the feed, anything else is redirected to the
+     * login or signup.
+     */
+    public boolean isLoggedIn(BrowserContext context) {
+        long start = System.nanoTime();
+        try {
+            APIResponse response = context.request().get("https://www.linkedin.com/feed/",
+                    RequestOptions.create().setMaxRedirects(0).setTimeout(timeouts.ceiling()));
+            boolean loggedIn = response.status() == 200;
+            response.dispose();
+            return loggedIn;
+        } catch (PlaywrightException e) {
+            LOG.info("{}Could not check the session: {}", progress(), e.getMessage());
+            return false;
+        } finally {
+            metrics.recordSince("session_check", start);
+        }
+    }
+
+    private Browser launch(Playwright playwright) {
+        LOG.info("{}Starting browser ...", progress());
+        return playwright.chromium().launch(new BrowserType.LaunchOptions().setHeadless(false));
+    }
+
     public void touchFile(Path filePath) {
         if (!filePath.toFile().exists()) {
             // create the file
@@ -138,20 +482,24 @@ public class Util {
 
     public Page loginToLinkedIn(BrowserContext context, String email, String password) {
         Page page = context.newPage();
-        page.navigate("https://www.linkedin.com/feed");
+        navigate(page, "https://www.linkedin.com/feed", PageType.LOGIN);
 
         if (page.url().startsWith("https://www.linkedin.com/signup/")) {
-            System.out.println(progress() + "Detected redirect, logging in as user with provided credentials...");
+            LOG.info("{}Detected redirect, logging in as user with provided credentials...", progress());
             // we were redirected to login -> so login again
-            page.navigate("https://www.linkedin.com/login");
-            page.locator("#username").fill(email);
-            page.locator("#password").fill(password);
-            page.getByRole(AriaRole.BUTTON, new Page.GetByRoleOptions().setName("Einloggen").setExact(true)).click();
+            submitLogin(page, email, password);
         }
 
         return page;
     }
 
+    private void submitLogin(Page page, String email, String password) {
+        navigate(page, "https://www.linkedin.com/login", PageType.LOGIN);
+        page.locator("#username").fill(email);
+        page.locator("#password").fill(password);
+        page.getByRole(AriaRole.BUTTON, new Page.GetByRoleOptions().setName("Einloggen").setExact(true)).click();
+    }
+
     public String createUrl(String baseUrl, Map<String, List<String>> params, List<String> usedParams) {
         StringBuilder sb = new StringBuilder();
         sb.append(baseUrl + "?");
@@ -168,10 +516,10 @@ public class Util {
     }
 
     public boolean isEmptySearchPage(Page page, String additionalInfo){
-        page.waitForSelector(".search-results-container");
-        Locator resultItems = page.locator(".search-results-container").locator("li.reusable-search__result-container");
+        waitUntilReady(page, PageType.SEARCH);
+        Locator resultItems = page.locator(selector(PageType.SEARCH)).locator("li.reusable-search__result-container");
         if(resultItems.count() == 0) {
-            System.out.println(progress() + "Detected empty search page " + additionalInfo);
+            LOG.info("{}Detected empty search page {}", progress(), additionalInfo);
             return true;
         }
         return false;
@@ -190,7 +538,12 @@ public class Util {
         } else {
             waitTime = waitTime - variation;
         }
+        ScrapeEvents.Wait event = new ScrapeEvents.Wait(waitTime);
+        long start = System.nanoTime();
+        event.begin();
         wait(waitTime);
+        event.finish(ScrapeEvents.OK);
+        metrics.recordSince("wait", start);
     }
 
     private void wait(int millis) {
@@ -211,27 +564,55 @@ public class Util {
         return e.getMessage();
     }
 
-    public String progress() {
-        return progress(count, size);
+    public ProgressTracker.Progress progress() {
+        return progress.progress();
+    }
+
+    /**
+     * @see ProgressTracker#currentProgress()
+     */
+    public ProgressTracker.Progress currentProgress() {
+        return progress.currentProgress();
     }
 
-    public String progress(int count, int size) {
-        // save for internal messages
-        this.count = count;
-        this.size = size;
+    /**
+     * @see ProgressTracker#progress(int, int)
+     */
+    public ProgressTracker.Progress progress(int count, int size) {
+        return progress.progress(count, size);
+    }
+
+    /**
+     * LinkedIn does not let the account continue without a manual verification.
+     * Aborts a run with a single account, with several accounts only the
+     * account is taken out.
+     */
+    public static class CheckpointException extends ErrorCollector.FailFastException {
+        private static final long serialVersionUID = 1L;
 
-        long currentTime = System.currentTimeMillis();
-        long elapsed = currentTime - startTime;
-        return "(" + count + "/" + size + ") - " + toTime(elapsed) + " | ";
+        public CheckpointException(String message) {
+            super(message);
+        }
     }
 
-    private String toTime(long millis) {
-        return String.format("%02d:%02d:%02d",
-                TimeUnit.MILLISECONDS.toHours(millis),
-                TimeUnit.MILLISECONDS.toMinutes(millis) -
-                        TimeUnit.HOURS.toMinutes(TimeUnit.MILLISECONDS.toHours(millis)),
-                TimeUnit.MILLISECONDS.toSeconds(millis) -
-                        TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(millis)));
+    /**
+     * A navigation started by {@link #startNavigation} and not finished yet.
+     */
+    public static class PendingNavigation {
+        private final PageType type;
+        private final String url;
+        private final ScrapeEvents.Navigate event;
+        private final long start = System.nanoTime();
+
+        private PendingNavigation(PageType type, String url) {
+            this.type = type;
+            this.url = url;
+            this.event = new ScrapeEvents.Navigate(type, url);
+        }
+
+        public String getUrl() {
+            return url;
+        }
     }
 
     public void debug(Locator loc) {
@@ -0,0 +1,119 @@
+package io.qbilon.linkedin.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class HttpFetcherTest {
+
+    // the cookies of another domain, expired and secure ones must not be sent over http://localhost
+    private static final String STORAGE_STATE = "{\"cookies\": ["
+            + "{\"name\": \"li_at\", \"value\": \"token\", \"domain\": \".localhost\", \"path\": \"/\", \"expires\": -1, \"secure\": false},"
+            + "{\"name\": \"JSESSIONID\", \"value\": \"ajax:123\", \"domain\": \"localhost\", \"path\": \"/in\", \"expires\": -1, \"secure\": false},"
+            + "{\"name\": \"bcookie\", \"value\": \"other\", \"domain\": \".linkedin.com\", \"path\": \"/\", \"expires\": -1, \"secure\": false},"
+            + "{\"name\": \"lidc\", \"value\": \"expired\", \"domain\": \"localhost\", \"path\": \"/\", \"expires\": 1, \"secure\": false},"
+            + "{\"name\": \"li_rm\", \"value\": \"secure\", \"domain\": \"localhost\", \"path\": \"/\", \"expires\": -1, \"secure\": true}"
+            + "], \"origins\": []}";
+
+    private HttpServer server;
+    private String baseUrl;
+    private List<String> cookieHeaders = new CopyOnWriteArrayList<>();
+    private AtomicInteger loginRequests = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/in/max-mustermann", exchange -> {
+            cookieHeaders.add(String.valueOf(exchange.getRequestHeaders().getFirst("Cookie")));
+            respond(exchange, 200, fixture("profile.html"));
+        });
+        // LinkedIn redirects a session it does not accept to the login
+        server.createContext("/in/logged-out", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/login");
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        server.createContext("/login", exchange -> {
+            loginRequests.incrementAndGet();
+            respond(exchange, 200, "<html><body>Login</body></html>");
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void forwardsTheMatchingCookiesOfTheSession() throws Exception {
+        HttpFetcher fetcher = HttpFetcher.fromStorageState(STORAGE_STATE, null);
+
+        assertNotNull(fetcher.fetch(baseUrl + "/in/max-mustermann/"));
+        assertEquals(List.of("li_at=token; JSESSIONID=ajax:123"), cookieHeaders);
+    }
+
+    @Test
+    void forwardsTheCookiesOfTheNewSessionAfterALogin() throws Exception {
+        HttpFetcher fetcher = HttpFetcher.fromStorageState(STORAGE_STATE, null);
+        fetcher.updateSession("{\"cookies\": [{\"name\": \"li_at\", \"value\": \"renewed\", \"domain\": \".localhost\"}]}");
+
+        fetcher.fetch(baseUrl + "/in/max-mustermann/");
+        assertEquals(List.of("li_at=renewed"), cookieHeaders);
+    }
+
+    @Test
+    void returnsNullInsteadOfFollowingARedirect() throws Exception {
+        HttpFetcher fetcher = HttpFetcher.fromStorageState(STORAGE_STATE, null);
+
+        assertNull(fetcher.fetch(baseUrl + "/in/logged-out/"));
+        assertEquals(0, loginRequests.get());
+        // the caller falls back to the browser
+        fetcher.markFallback();
+        assertEquals("0 pages fetched, 1 failed requests, 1 fallbacks to the browser", fetcher.stats());
+    }
+
+    @Test
+    void fetchesAProfileTheJobTitlesCanBeExtractedFrom() throws Exception {
+        HttpFetcher fetcher = HttpFetcher.fromStorageState(STORAGE_STATE, null);
+        String url = baseUrl + "/in/max-mustermann/";
+
+        String html = fetcher.fetch(url);
+        List<String> jobTitles = new HtmlExtractor().extractJobTitles(Jsoup.parse(html, url), 4);
+        assertEquals(List.of("Head of IT", "CTO", "Software Engineer"), jobTitles);
+        assertEquals("1 pages fetched, 0 failed requests, 0 fallbacks to the browser", fetcher.stats());
+    }
+
+    private static String fixture(String name) throws IOException {
+        try (InputStream in = HttpFetcherTest.class.getResourceAsStream(name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}